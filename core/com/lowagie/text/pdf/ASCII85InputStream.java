@@ -0,0 +1,160 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes the ASCII85Decode filter as the data is read. The decoding is
+ * the same as <CODE>PdfReader.ASCII85Decode(byte[])</CODE>.
+ * @since 2.1.8
+ */
+class ASCII85InputStream extends FilterInputStream {
+
+    private int chn[] = new int[5];
+    private byte out[] = new byte[4];
+    private int outPtr;
+    private int outLength;
+    private boolean eof;
+
+    ASCII85InputStream(InputStream in) {
+        super(in);
+    }
+
+    public int read() throws IOException {
+        if (outPtr >= outLength && !fill())
+            return -1;
+        return out[outPtr++] & 0xff;
+    }
+
+    /**
+     * Decodes the next group of up to 5 chars.
+     * @return <CODE>false</CODE> at the end of the data
+     */
+    private boolean fill() throws IOException {
+        outPtr = 0;
+        outLength = 0;
+        if (eof)
+            return false;
+        int state = 0;
+        while (true) {
+            int ch = in.read();
+            if (ch < 0 || ch == '~')
+                break;
+            if (PRTokeniser.isWhitespace(ch))
+                continue;
+            if (ch == 'z' && state == 0) {
+                out[0] = out[1] = out[2] = out[3] = 0;
+                outLength = 4;
+                return true;
+            }
+            if (ch < '!' || ch > 'u')
+                throw new IOException("Illegal character in ASCII85Decode.");
+            chn[state] = ch - '!';
+            ++state;
+            if (state == 5) {
+                int r = 0;
+                for (int j = 0; j < 5; ++j)
+                    r = r * 85 + chn[j];
+                out[0] = (byte)(r >> 24);
+                out[1] = (byte)(r >> 16);
+                out[2] = (byte)(r >> 8);
+                out[3] = (byte)r;
+                outLength = 4;
+                return true;
+            }
+        }
+        eof = true;
+        // the final partial group is completed as in PdfReader.ASCII85Decode()
+        int r;
+        if (state == 2)
+            r = chn[0] * 85 * 85 * 85 * 85 + chn[1] * 85 * 85 * 85 + 85 * 85 * 85  + 85 * 85 + 85;
+        else if (state == 3)
+            r = chn[0] * 85 * 85 * 85 * 85 + chn[1] * 85 * 85 * 85  + chn[2] * 85 * 85 + 85 * 85 + 85;
+        else if (state == 4)
+            r = chn[0] * 85 * 85 * 85 * 85 + chn[1] * 85 * 85 * 85  + chn[2] * 85 * 85  + chn[3] * 85 + 85;
+        else
+            return false;
+        out[0] = (byte)(r >> 24);
+        out[1] = (byte)(r >> 16);
+        out[2] = (byte)(r >> 8);
+        outLength = state - 1;
+        return true;
+    }
+
+    public int read(byte b[], int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        int k = 0;
+        while (k < len) {
+            if (outPtr >= outLength && !fill())
+                break;
+            int n = Math.min(len - k, outLength - outPtr);
+            System.arraycopy(out, outPtr, b, off + k, n);
+            outPtr += n;
+            k += n;
+        }
+        return k == 0 ? -1 : k;
+    }
+
+    public long skip(long n) throws IOException {
+        long k = 0;
+        while (k < n && read() >= 0)
+            ++k;
+        return k;
+    }
+
+    public int available() throws IOException {
+        return outLength - outPtr;
+    }
+
+    public boolean markSupported() {
+        return false;
+    }
+}
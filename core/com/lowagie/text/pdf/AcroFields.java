@@ -50,10 +50,12 @@ import java.awt.Color;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -84,6 +86,8 @@ public class AcroFields {
     public static final int DA_SIZE = 1;
     public static final int DA_COLOR = 2;
     private HashMap extensionFonts = new HashMap();
+    /** The fonts of the default resources already read, by object number. */
+    private HashMap documentFonts = new HashMap();
     private XfaForm xfa;
     
     /**
@@ -136,6 +140,19 @@ public class AcroFields {
     private float extraMarginLeft;
     private float extraMarginTop;
     private ArrayList substitutionFonts;
+    /** The appearances shared with other documents. */
+    private AppearanceCache appearanceCache;
+    /**
+     * The appearances already generated in this document, by key. The
+     * values are <CODE>Object[]{PdfAppearance, Integer}</CODE> with the
+     * first visible choice.
+     */
+    private HashMap appearances;
+    /** The keys of the fonts of the form, by font. */
+    private HashMap fontKeys;
+    /** The fonts of the form, by key. */
+    private HashMap keyFonts;
+    private PdfSmartCopy.StreamHasher fontHasher;
 
     AcroFields(PdfReader reader, PdfWriter writer) {
         this.reader = reader;
@@ -503,7 +520,29 @@ public class AcroFields {
         return true;
     }
 
+    /**
+     * Splits a default appearance string in the font name, the font size
+     * and the color, the elements at <CODE>DA_FONT</CODE>, <CODE>DA_SIZE</CODE>
+     * and <CODE>DA_COLOR</CODE>. Any of them can be <CODE>null</CODE>.
+     * @param da the default appearance string
+     * @return the font name, the font size and the color
+     */
     public static Object[] splitDAelements(String da) {
+        // the same few strings are used by most fields of most forms
+        Object ret[];
+        synchronized (daCache) {
+            ret = (Object[])daCache.get(da);
+        }
+        if (ret == null) {
+            ret = parseDAelements(da);
+            synchronized (daCache) {
+                daCache.put(da, ret);
+            }
+        }
+        return ret.clone();
+    }
+
+    private static Object[] parseDAelements(String da) {
         try {
             PRTokeniser tk = new PRTokeniser(PdfEncodings.convertToBytes(da, null));
             ArrayList stack = new ArrayList();
@@ -573,9 +612,13 @@ public class AcroFields {
                         PdfObject po = font.get(new PdfName((String)dab[DA_FONT]));
                         if (po != null && po.type() == PdfObject.INDIRECT) {
                             PRIndirectReference por = (PRIndirectReference)po;
-                            BaseFont bp = new DocumentFont((PRIndirectReference)po);
-                            tx.setFont(bp);
                             Integer porkey = new Integer(por.getNumber());
+                            BaseFont bp = (BaseFont)documentFonts.get(porkey);
+                            if (bp == null) {
+                                bp = new DocumentFont(por);
+                                documentFonts.put(porkey, bp);
+                            }
+                            tx.setFont(bp);
                             BaseFont porf = (BaseFont)extensionFonts.get(porkey);
                             if (porf == null) {
                                 if (!extensionFonts.containsKey(porkey)) {
@@ -726,7 +769,7 @@ public class AcroFields {
         PdfName fieldType = merged.getAsName(PdfName.FT);
         if (PdfName.TX.equals(fieldType)) {
             tx.setText(text);
-            return tx.getAppearance();
+            return getAppearance(tx, false);
         }
         if (!PdfName.CH.equals(fieldType))
             throw new DocumentException("An appearance was requested without a variable text field.");
@@ -737,7 +780,7 @@ public class AcroFields {
             flags = nfl.intValue();
         if ((flags & PdfFormField.FF_COMBO) != 0 && opt == null) {
             tx.setText(text);
-            return tx.getAppearance();
+            return getAppearance(tx, false);
         }
         if (opt != null) {
             String choices[] = new String[opt.size()];
@@ -761,7 +804,7 @@ public class AcroFields {
                     }
                 }
                 tx.setText(text);
-                return tx.getAppearance();
+                return getAppearance(tx, false);
             }
             int idx = 0;
             for (int k = 0; k < choicesExp.length; ++k) {
@@ -774,9 +817,137 @@ public class AcroFields {
             tx.setChoiceExports(choicesExp);
             tx.setChoiceSelection(idx);
         }
-        PdfAppearance app = tx.getListAppearance();
-        topFirst = tx.getTopFirst();
-        return app;
+        return getAppearance(tx, true);
+    }
+
+    /**
+     * Gets the appearance of a field, from the cache if there is one.
+     * @param tx the field
+     * @param list <CODE>true</CODE> for a list, <CODE>false</CODE> for a text or a combo
+     * @return the appearance
+     */
+    private PdfAppearance getAppearance(TextField tx, boolean list) throws IOException, DocumentException {
+        if (appearanceCache == null) {
+            if (!list)
+                return tx.getAppearance();
+            PdfAppearance app = tx.getListAppearance();
+            topFirst = tx.getTopFirst();
+            return app;
+        }
+        ArrayList key = getAppearanceKey(tx, list);
+        if (appearances == null)
+            appearances = new HashMap();
+        Object found[] = (Object[])appearances.get(key);
+        if (found == null) {
+            PdfAppearance app = null;
+            int first = 0;
+            AppearanceCache.Entry entry = appearanceCache.get(key);
+            if (entry != null) {
+                app = entry.createAppearance(writer, keyFonts);
+                first = entry.topFirst;
+            }
+            if (app == null) {
+                if (list) {
+                    app = tx.getListAppearance();
+                    first = tx.getTopFirst();
+                }
+                else
+                    app = tx.getAppearance();
+                String chars = tx.getText() == null ? "" : tx.getText();
+                if (list) {
+                    String choices[] = tx.getChoices();
+                    StringBuffer buf = new StringBuffer();
+                    for (int k = 0; k < choices.length; ++k)
+                        buf.append(choices[k]);
+                    chars = buf.toString();
+                }
+                entry = AppearanceCache.createEntry(app, first, chars, fontKeys);
+                if (entry != null)
+                    appearanceCache.put(key, entry);
+            }
+            found = new Object[]{app, new Integer(first)};
+            appearances.put(key, found);
+        }
+        topFirst = ((Integer)found[1]).intValue();
+        return (PdfAppearance)found[0];
+    }
+
+    /**
+     * Gets everything the appearance of a field is generated from.
+     * @param tx the field
+     * @param list <CODE>true</CODE> for a list
+     * @return the key
+     */
+    private ArrayList getAppearanceKey(TextField tx, boolean list) throws IOException {
+        ArrayList key = new ArrayList();
+        key.add(Boolean.valueOf(list));
+        key.add(tx.getText());
+        key.add(tx.getDefaultText());
+        key.add(new Float(tx.getBorderWidth()));
+        key.add(new Integer(tx.getBorderStyle()));
+        key.add(getColorKey(tx.getBorderColor()));
+        key.add(getColorKey(tx.getBackgroundColor()));
+        key.add(getColorKey(tx.getTextColor()));
+        key.add(getFontKey(tx.getFont()));
+        // the extension font is read from the font of the form
+        key.add(Boolean.valueOf(tx.getExtensionFont() != null));
+        key.add(tx.getSubstitutionFonts() == null ? null : new ArrayList(tx.getSubstitutionFonts()));
+        key.add(new Float(tx.getFontSize()));
+        key.add(new Integer(tx.getAlignment()));
+        key.add(new Float(tx.getBox().getWidth()));
+        key.add(new Float(tx.getBox().getHeight()));
+        key.add(new Integer(tx.getRotation()));
+        key.add(new Integer(tx.getVisibility()));
+        key.add(new Integer(tx.getOptions()));
+        key.add(new Integer(tx.getMaxCharacterLength()));
+        key.add(new Float(extraMarginLeft));
+        key.add(new Float(extraMarginTop));
+        if (list) {
+            key.add(Arrays.asList(tx.getChoices()));
+            key.add(Arrays.asList(tx.getChoiceExports()));
+            key.add(new Integer(tx.getChoiceSelection()));
+        }
+        return key;
+    }
+
+    private static Object getColorKey(Color color) {
+        if (color == null)
+            return null;
+        switch (ExtendedColor.getType(color)) {
+            case ExtendedColor.TYPE_GRAY:
+                return "g" + ((GrayColor)color).getGray();
+            case ExtendedColor.TYPE_CMYK: {
+                CMYKColor cmyk = (CMYKColor)color;
+                return "k" + cmyk.getCyan() + ' ' + cmyk.getMagenta() + ' ' + cmyk.getYellow() + ' ' + cmyk.getBlack();
+            }
+            case ExtendedColor.TYPE_RGB:
+                return "r" + color.getRGB();
+            default:
+                return color;
+        }
+    }
+
+    /**
+     * Gets the key of a font. The fonts of the form are known by their
+     * content, the same font in two copies of a form has the same key.
+     * @param bf the font
+     * @return the key
+     */
+    private Object getFontKey(BaseFont bf) throws IOException {
+        if (bf == null || bf.getFontType() != BaseFont.FONT_TYPE_DOCUMENT)
+            return bf;
+        if (fontKeys == null) {
+            fontKeys = new HashMap();
+            keyFonts = new HashMap();
+            fontHasher = new PdfSmartCopy.StreamHasher();
+        }
+        Object fontKey = fontKeys.get(bf);
+        if (fontKey == null) {
+            fontKey = fontHasher.hash((PRIndirectReference)((DocumentFont)bf).getIndirectReference());
+            fontKeys.put(bf, fontKey);
+            keyFonts.put(fontKey, bf);
+        }
+        return fontKey;
     }
 
     Color getMKColor(PdfArray ar) {
@@ -2325,6 +2496,33 @@ public class AcroFields {
         this.fieldCache = fieldCache;
     }
 
+    /**
+     * Gets the cache of the appearances shared with other documents.
+     * 
+     * @return the cache of the appearances or <CODE>null</CODE>
+     * @since 2.1.8
+     */
+    public AppearanceCache getAppearanceCache() {
+        return appearanceCache;
+    }
+
+    /**
+     * Sets a cache of the appearances, shared with other documents. When a
+     * field gets a value it had before, with the same font, colors, border and
+     * dimensions, its appearance is copied from the cache instead of being
+     * generated again, and in this document the fields with the same
+     * appearance share it. It's most useful with many documents filled from
+     * the same form; the cache can be used from several threads.
+     * 
+     * @param appearanceCache the cache of the appearances or <CODE>null</CODE>
+     * to generate all the appearances
+     * @since 2.1.8
+     */
+    public void setAppearanceCache(AppearanceCache appearanceCache) {
+        this.appearanceCache = appearanceCache;
+        appearances = null;
+    }
+
     /**
      * Sets extra margins in text fields to better mimic the Acrobat layout.
      * 
@@ -2362,6 +2560,18 @@ public class AcroFields {
      */
     private Map fieldCache;
 
+    /**
+     * The default appearance strings already split, shared by all the
+     * documents. The elements are immutable, so only the arrays are copied.
+     */
+    private static final Map daCache = new LinkedHashMap(64, 0.75f, true) {
+        private static final long serialVersionUID = -2290744914457914591L;
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > 256;
+        }
+    };
+
     static {
         stdFieldFontNames.put("CoBO", new String[]{"Courier-BoldOblique"});
         stdFieldFontNames.put("CoBo", new String[]{"Courier-Bold"});
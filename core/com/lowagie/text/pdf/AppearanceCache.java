@@ -0,0 +1,209 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.lowagie.text.Rectangle;
+
+/**
+ * A cache of the appearances generated for the form fields, shared by
+ * several <CODE>AcroFields</CODE> and usable from several threads.
+ * <P>
+ * An appearance is found by everything it's generated from: the field
+ * type, the value, the font, the size, the colors, the border, the
+ * dimensions of the widget and the options. When a field is set to a value
+ * it had before, in this document or in another, the appearance is copied
+ * instead of laid out again. In a document each different appearance is
+ * written once and shared by all the widgets that use it.
+ * <P>
+ * Only the appearances whose fonts can be used in any document are kept:
+ * the standard fonts, the fonts not embedded and the fonts of the default
+ * resources of the form. The fonts of the form are recognized by their
+ * content, so two copies of the same template share the appearances.
+ * @since 2.1.8
+ */
+public class AppearanceCache {
+
+    private final int maxAppearances;
+    private final LinkedHashMap entries;
+
+    /**
+     * Creates a cache of up to 1000 appearances.
+     */
+    public AppearanceCache() {
+        this(1000);
+    }
+
+    /**
+     * Creates a cache.
+     * @param maxAppearances the maximum number of appearances kept, the
+     * least recently used are dropped first
+     */
+    public AppearanceCache(int maxAppearances) {
+        this.maxAppearances = maxAppearances;
+        entries = new LinkedHashMap(16, 0.75f, true) {
+            private static final long serialVersionUID = -7151291836287587342L;
+
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > AppearanceCache.this.maxAppearances;
+            }
+        };
+    }
+
+    /**
+     * Gets the maximum number of appearances kept.
+     * @return the maximum number of appearances
+     */
+    public int getMaxAppearances() {
+        return maxAppearances;
+    }
+
+    /**
+     * Gets the number of appearances in the cache.
+     * @return the number of appearances
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all the appearances.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized Entry get(Object key) {
+        return (Entry)entries.get(key);
+    }
+
+    synchronized void put(Object key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    /**
+     * Keeps an appearance to create it again in other documents.
+     * @param app the appearance
+     * @param topFirst the first visible choice of a list
+     * @param text all the characters that the appearance may show
+     * @param fontKeys the keys of the fonts of the form, by font
+     * @return the appearance to keep or <CODE>null</CODE> if it depends on
+     * its document
+     */
+    static Entry createEntry(PdfAppearance app, int topFirst, String text, Map fontKeys) {
+        if (!app.getPageResources().hasOnlyFonts())
+            return null;
+        Object fonts[] = app.usedFonts.toArray();
+        for (int k = 0; k < fonts.length; ++k) {
+            BaseFont bf = (BaseFont)fonts[k];
+            // the name of a subset depends on the document
+            if (bf.getFontType() == BaseFont.FONT_TYPE_TTUNI && bf.isSubset())
+                return null;
+            // a font of the form is replaced by the same font in the other forms
+            if (bf.getFontType() == BaseFont.FONT_TYPE_DOCUMENT) {
+                fonts[k] = fontKeys.get(bf);
+                if (fonts[k] == null)
+                    return null;
+            }
+        }
+        return new Entry(app, fonts, topFirst, text);
+    }
+
+    /**
+     * An appearance without its document: the content, the bounding box,
+     * the matrix and the fonts it uses. The fonts of the form are kept by
+     * their key.
+     */
+    static class Entry {
+        private final byte content[];
+        private final Rectangle bBox;
+        private final PdfArray matrix;
+        private final Object fonts[];
+        final int topFirst;
+        private final String text;
+
+        private Entry(PdfAppearance app, Object fonts[], int topFirst, String text) {
+            content = app.getInternalBuffer().toByteArray();
+            bBox = new Rectangle(app.getBoundingBox());
+            matrix = app.matrix == null ? null : new PdfArray(app.matrix);
+            this.fonts = fonts;
+            this.topFirst = topFirst;
+            this.text = text;
+        }
+
+        /**
+         * Creates the appearance in a document.
+         * @param writer the document
+         * @param keyFonts the fonts of the form of the document, by key
+         * @return the appearance or <CODE>null</CODE> if a font of the
+         * form is missing in the document
+         */
+        PdfAppearance createAppearance(PdfWriter writer, Map keyFonts) {
+            BaseFont bfs[] = new BaseFont[fonts.length];
+            for (int k = 0; k < fonts.length; ++k) {
+                if (fonts[k] instanceof BaseFont)
+                    bfs[k] = (BaseFont)fonts[k];
+                else if ((bfs[k] = (BaseFont)keyFonts.get(fonts[k])) == null)
+                    return null;
+            }
+            PdfAppearance app = PdfAppearance.createAppearance(writer, bBox.getWidth(), bBox.getHeight());
+            app.setBoundingBox(new Rectangle(bBox));
+            if (matrix != null)
+                app.matrix = new PdfArray(matrix);
+            for (int k = 0; k < bfs.length; ++k) {
+                app.addFont(bfs[k]);
+                // the characters used by the appearance must be in the font
+                if (bfs[k].getFontType() != BaseFont.FONT_TYPE_DOCUMENT)
+                    writer.addSimple(bfs[k]).convertToBytes(text);
+            }
+            app.getInternalBuffer().append(content);
+            return app;
+        }
+    }
+}
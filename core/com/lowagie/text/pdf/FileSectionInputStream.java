@@ -0,0 +1,120 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a section of a <CODE>RandomAccessFileOrArray</CODE> as an
+ * <CODE>InputStream</CODE>. The file is closed when the stream is closed.
+ * @since 2.1.8
+ */
+class FileSectionInputStream extends InputStream {
+
+    private RandomAccessFileOrArray file;
+    private long position;
+    private long remaining;
+
+    /**
+     * Creates a stream reading <CODE>length</CODE> bytes starting at <CODE>position</CODE>.
+     * @param file the file, owned by this stream
+     * @param position the start of the section
+     * @param length the length of the section
+     */
+    FileSectionInputStream(RandomAccessFileOrArray file, long position, long length) {
+        this.file = file;
+        this.position = position;
+        this.remaining = length;
+    }
+
+    public int read() throws IOException {
+        byte b[] = new byte[1];
+        int n = read(b, 0, 1);
+        return n <= 0 ? -1 : b[0] & 0xff;
+    }
+
+    public int read(byte b[], int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (remaining <= 0)
+            return -1;
+        if (len > remaining)
+            len = (int)remaining;
+        // the file may be shared with other streams so always seek
+        file.seek(position);
+        int n = file.read(b, off, len);
+        if (n <= 0) {
+            remaining = 0;
+            return -1;
+        }
+        position += n;
+        remaining -= n;
+        return n;
+    }
+
+    public long skip(long n) throws IOException {
+        if (n <= 0)
+            return 0;
+        if (n > remaining)
+            n = remaining;
+        position += n;
+        remaining -= n;
+        return n;
+    }
+
+    public int available() throws IOException {
+        return (int)Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+}
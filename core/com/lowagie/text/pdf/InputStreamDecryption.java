@@ -0,0 +1,114 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decrypts an <CODE>InputStream</CODE> as it is read. It's the
+ * counterpart of <CODE>OutputStreamEncryption</CODE>.
+ * @since 2.1.8
+ */
+class InputStreamDecryption extends InputStream {
+
+    private InputStream in;
+    private StandardDecryption dec;
+    private byte buf[] = new byte[4096];
+    private byte out[];
+    private int outPtr;
+    private boolean eof;
+
+    /**
+     * @param in the encrypted stream
+     * @param dec the decryptor, already keyed for the object being read
+     */
+    InputStreamDecryption(InputStream in, StandardDecryption dec) {
+        this.in = in;
+        this.dec = dec;
+    }
+
+    public int read() throws IOException {
+        if (!fill())
+            return -1;
+        return out[outPtr++] & 0xff;
+    }
+
+    public int read(byte b[], int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!fill())
+            return -1;
+        int n = Math.min(len, out.length - outPtr);
+        System.arraycopy(out, outPtr, b, off, n);
+        outPtr += n;
+        return n;
+    }
+
+    private boolean fill() throws IOException {
+        while (out == null || outPtr >= out.length) {
+            if (eof)
+                return false;
+            int n = in.read(buf);
+            if (n < 0) {
+                eof = true;
+                out = dec.finish();
+            }
+            else {
+                out = dec.update(buf, 0, n);
+            }
+            outPtr = 0;
+            if (out == null)
+                out = new byte[0];
+        }
+        return true;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes the LZWDecode filter as the data is read. The decoding is
+ * the same as <CODE>LZWDecoder</CODE> but the input and the output
+ * don't need to be in memory.
+ * @since 2.1.8
+ */
+class LZWInputStream extends FilterInputStream {
+
+    private static final int andTable[] = {511, 1023, 2047, 4095};
+
+    private byte stringTable[][];
+    private int tableIndex;
+    private int bitsToGet = 9;
+    private int nextData;
+    private int nextBits;
+    private int oldCode;
+    private boolean started;
+    private boolean eof;
+    /** The string being returned and the position in it. */
+    private byte out[];
+    private int outPtr;
+
+    LZWInputStream(InputStream in) {
+        super(in);
+    }
+
+    public int read() throws IOException {
+        if ((out == null || outPtr >= out.length) && !fill())
+            return -1;
+        return out[outPtr++] & 0xff;
+    }
+
+    public int read(byte b[], int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        int k = 0;
+        while (k < len) {
+            if ((out == null || outPtr >= out.length) && !fill())
+                break;
+            int n = Math.min(len - k, out.length - outPtr);
+            System.arraycopy(out, outPtr, b, off + k, n);
+            outPtr += n;
+            k += n;
+        }
+        return k == 0 ? -1 : k;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof)
+            return false;
+        if (!started) {
+            started = true;
+            int b0 = in.read();
+            int b1 = in.read();
+            if (b0 == 0x00 && b1 == 0x01)
+                throw new IOException("LZW flavour not supported.");
+            initializeStringTable();
+            nextData = b0 < 0 ? 0 : b0;
+            nextBits = b0 < 0 ? 0 : 8;
+            if (b1 >= 0) {
+                nextData = (nextData << 8) | b1;
+                nextBits += 8;
+            }
+            if (b0 < 0 || b1 < 0) {
+                // too short to hold a code
+                eof = true;
+                return false;
+            }
+        }
+        int code = getNextCode();
+        if (code == 257) {
+            eof = true;
+            return false;
+        }
+        if (code == 256) {
+            initializeStringTable();
+            code = getNextCode();
+            if (code == 257) {
+                eof = true;
+                return false;
+            }
+            out = stringTable[code];
+            oldCode = code;
+        }
+        else if (code < tableIndex) {
+            out = stringTable[code];
+            addStringToTable(stringTable[oldCode], out[0]);
+            oldCode = code;
+        }
+        else {
+            byte string[] = stringTable[oldCode];
+            string = composeString(string, string[0]);
+            out = string;
+            stringTable[tableIndex++] = string;
+            updateBits();
+            oldCode = code;
+        }
+        outPtr = 0;
+        return true;
+    }
+
+    private void initializeStringTable() {
+        if (stringTable == null) {
+            stringTable = new byte[8192][];
+            for (int i = 0; i < 256; i++) {
+                stringTable[i] = new byte[1];
+                stringTable[i][0] = (byte)i;
+            }
+        }
+        else {
+            for (int i = 256; i < tableIndex; i++)
+                stringTable[i] = null;
+        }
+        tableIndex = 258;
+        bitsToGet = 9;
+    }
+
+    private void addStringToTable(byte oldString[], byte newString) {
+        stringTable[tableIndex++] = composeString(oldString, newString);
+        updateBits();
+    }
+
+    private void updateBits() {
+        if (tableIndex == 511) {
+            bitsToGet = 10;
+        } else if (tableIndex == 1023) {
+            bitsToGet = 11;
+        } else if (tableIndex == 2047) {
+            bitsToGet = 12;
+        }
+    }
+
+    private static byte[] composeString(byte oldString[], byte newString) {
+        int length = oldString.length;
+        byte string[] = new byte[length + 1];
+        System.arraycopy(oldString, 0, string, 0, length);
+        string[length] = newString;
+        return string;
+    }
+
+    /**
+     * Returns the next 9, 10, 11 or 12 bits. A missing EndOfInformation
+     * code is assumed at the end of the data.
+     */
+    private int getNextCode() throws IOException {
+        while (nextBits < bitsToGet) {
+            int b = in.read();
+            if (b < 0)
+                return 257;
+            nextData = (nextData << 8) | b;
+            nextBits += 8;
+        }
+        int code = (nextData >> (nextBits - bitsToGet)) & andTable[bitsToGet - 9];
+        nextBits -= bitsToGet;
+        return code;
+    }
+
+    public long skip(long n) throws IOException {
+        long k = 0;
+        while (k < n && read() >= 0)
+            ++k;
+        return k;
+    }
+
+    public int available() throws IOException {
+        return out == null ? 0 : out.length - outPtr;
+    }
+
+    public boolean markSupported() {
+        return false;
+    }
+}
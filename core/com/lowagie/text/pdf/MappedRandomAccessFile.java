@@ -52,22 +52,38 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.nio.BufferUnderflowException;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 
+import com.lowagie.text.ExceptionConverter;
+
 /**
- * A {@link java.nio.MappedByteBuffer} wrapped as a {@link java.io.RandomAccessFile}
+ * A {@link java.nio.MappedByteBuffer} wrapped as a {@link java.io.RandomAccessFile}.
+ * <p>
+ * The file is mapped in segments of {@link #SEGMENT_SIZE} bytes that are only
+ * mapped when they are first read, so files of any size can be opened without
+ * bringing them into memory.
  *
  * @author Joakim Sandstroem
  * Created on 6.9.2006
  */
 public class MappedRandomAccessFile {
     
-    private MappedByteBuffer mappedByteBuffer = null;
+    /**
+     * The size of the mapped segments.
+     * @since 2.1.8
+     */
+    public static final int SEGMENT_SIZE = 1 << 26;
+    
+    private static final int SEGMENT_SHIFT = 26;
+    
+    private MappedByteBuffer segments[] = null;
     private FileChannel channel = null;
+    private FileChannel.MapMode mapMode;
+    private long length;
+    private long position;
     
     /**
      * Constructs a new MappedRandomAccessFile instance
@@ -91,7 +107,7 @@ public class MappedRandomAccessFile {
     }
     
     /**
-     * initializes the channel and mapped bytebuffer
+     * initializes the channel; the segments are mapped on demand
      * @param channel FileChannel
      * @param mapMode FileChannel.MapMode
      * @throws IOException
@@ -100,8 +116,9 @@ public class MappedRandomAccessFile {
     throws IOException {
         
         this.channel = channel;
-        this.mappedByteBuffer = channel.map(mapMode, 0L, channel.size());
-        mappedByteBuffer.load();
+        this.mapMode = mapMode;
+        this.length = channel.size();
+        this.segments = new MappedByteBuffer[(int)((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
     }
 
     /**
@@ -111,19 +128,37 @@ public class MappedRandomAccessFile {
     	return channel;
     }
     
+    /**
+     * Gets the segment holding a position, mapping it if needed.
+     * @param pos a position smaller than the length of the file
+     * @return the mapped segment
+     */
+    private MappedByteBuffer getSegment(long pos) {
+        int idx = (int)(pos >>> SEGMENT_SHIFT);
+        MappedByteBuffer segment = segments[idx];
+        if (segment == null) {
+            long start = (long)idx << SEGMENT_SHIFT;
+            try {
+                segment = channel.map(mapMode, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+            catch (IOException e) {
+                throw new ExceptionConverter(e);
+            }
+            segments[idx] = segment;
+        }
+        return segment;
+    }
+    
     /**
      * @see java.io.RandomAccessFile#read()
      * @return int next integer or -1 on EOF
      */
     public int read() {
-        try {
-            byte b = mappedByteBuffer.get();
-            int n = b & 0xff;
-            
-            return n;
-        } catch (BufferUnderflowException e) {
+        if (position >= length)
             return -1; // EOF
-        }
+        int n = getSegment(position).get((int)(position & (SEGMENT_SIZE - 1))) & 0xff;
+        ++position;
+        return n;
     }
     
     /**
@@ -134,15 +169,20 @@ public class MappedRandomAccessFile {
      * @return int bytes read or -1 on EOF
      */
     public int read(byte bytes[], int off, int len) {
-        int pos = mappedByteBuffer.position();
-        int limit = mappedByteBuffer.limit();
-        if (pos == limit)
+        if (position >= length)
             return -1; // EOF
-        int newlimit = pos + len - off;
-        if (newlimit > limit) {
-            len = limit - pos; // don't read beyond EOF
+        if (len > length - position)
+            len = (int)(length - position); // don't read beyond EOF
+        int n = 0;
+        while (n < len) {
+            MappedByteBuffer segment = getSegment(position);
+            int segPos = (int)(position & (SEGMENT_SIZE - 1));
+            int count = Math.min(len - n, segment.limit() - segPos);
+            segment.position(segPos);
+            segment.get(bytes, off + n, count);
+            n += count;
+            position += count;
         }
-        mappedByteBuffer.get(bytes, off, len);
         return len;
     }
     
@@ -151,7 +191,7 @@ public class MappedRandomAccessFile {
      * @return long
      */
     public long getFilePointer() {
-        return mappedByteBuffer.position();
+        return position;
     }
     
     /**
@@ -159,7 +199,7 @@ public class MappedRandomAccessFile {
      * @param pos long position
      */
     public void seek(long pos) {
-        mappedByteBuffer.position((int) pos);
+        position = pos;
     }
     
     /**
@@ -167,16 +207,19 @@ public class MappedRandomAccessFile {
      * @return long length
      */
     public long length() {
-        return mappedByteBuffer.limit();
+        return length;
     }
     
     /**
      * @see java.io.RandomAccessFile#close()
-     * Cleans the mapped bytebuffer and closes the channel
+     * Cleans the mapped segments and closes the channel
      */
     public void close() throws IOException {
-        clean(mappedByteBuffer);
-        mappedByteBuffer = null;
+        if (segments != null) {
+            for (int k = 0; k < segments.length; ++k)
+                clean(segments[k]);
+            segments = null;
+        }
         if (channel != null)
             channel.close();
         channel = null;
@@ -61,7 +61,7 @@ import com.lowagie.text.ExceptionConverter;
 public class PRStream extends PdfStream {
     
     protected PdfReader reader;
-    protected int offset;
+    protected long offset;
     protected int length;
     
     //added by ujihara for decryption
@@ -89,7 +89,7 @@ public class PRStream extends PdfStream {
         this.reader = reader;
     }
 
-    public PRStream(PdfReader reader, int offset) {
+    public PRStream(PdfReader reader, long offset) {
         this.reader = reader;
         this.offset = offset;
     }
@@ -188,7 +188,7 @@ public class PRStream extends PdfStream {
         put(PdfName.LENGTH, new PdfNumber(length));
     }
     
-    public int getOffset() {
+    public long getOffset() {
         return offset;
     }
     
@@ -218,10 +218,28 @@ public class PRStream extends PdfStream {
     }
     
     public void toPdf(PdfWriter writer, OutputStream os) throws IOException {
-        byte[] b = PdfReader.getStreamBytesRaw(this);
         PdfEncryption crypto = null;
         if (writer != null)
             crypto = writer.getEncryption();
+        if (offset >= 0 && crypto == null && reader.getDecrypt() == null) {
+            // unmodified and not encrypted: copy the raw bytes straight from the file
+            PdfObject objLen = get(PdfName.LENGTH);
+            put(PdfName.LENGTH, new PdfNumber(length));
+            superToPdf(writer, os);
+            put(PdfName.LENGTH, objLen);
+            os.write(STARTSTREAM);
+            RandomAccessFileOrArray rf = reader.getSafeFile();
+            try {
+                rf.reOpen();
+                rf.copyTo(offset, length, os);
+            }
+            finally {
+                try{rf.close();}catch(Exception e){}
+            }
+            os.write(ENDSTREAM);
+            return;
+        }
+        byte[] b = PdfReader.getStreamBytesRaw(this);
         PdfObject objLen = get(PdfName.LENGTH);
         int nn = b.length;
         if (crypto != null)
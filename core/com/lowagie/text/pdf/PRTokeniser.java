@@ -103,6 +103,15 @@ public class PRTokeniser {
     protected int reference;
     protected int generation;
     protected boolean hexString;
+    
+    /** The bytes of the current token. The array is reused from token to token. */
+    private byte tokenBytes[] = new byte[64];
+    private int tokenLength;
+    /** The buffers holding the two numbers that may start an indirect reference. */
+    private byte n1Bytes[] = new byte[64];
+    private byte n2Bytes[] = new byte[64];
+    /** <CODE>true</CODE> if the current name can be written back without escaping. */
+    private boolean plainName;
        
     public PRTokeniser(String filename) throws IOException {
         file = new RandomAccessFileOrArray(filename);
@@ -120,7 +129,17 @@ public class PRTokeniser {
         file.seek(pos);
     }
     
-    public int getFilePointer() throws IOException {
+    /**
+     * Moves the file pointer to a position that can be beyond 2 GB.
+     * @param pos the new position
+     * @throws IOException on error
+     * @since 2.1.8
+     */
+    public void seek(long pos) throws IOException {
+        file.seek(pos);
+    }
+    
+    public long getFilePointer() throws IOException {
         return file.getFilePointer();
     }
 
@@ -128,7 +147,7 @@ public class PRTokeniser {
         file.close();
     }
     
-    public int length() throws IOException {
+    public long length() throws IOException {
         return file.length();
     }
 
@@ -173,9 +192,105 @@ public class PRTokeniser {
     }
     
     public String getStringValue() {
+        if (stringValue == null) {
+            if (tokenLength == 0) {
+                stringValue = EMPTY;
+            }
+            else {
+                char c[] = new char[tokenLength];
+                for (int k = 0; k < tokenLength; ++k)
+                    c[k] = (char)(tokenBytes[k] & 0xff);
+                stringValue = new String(c);
+            }
+        }
         return stringValue;
     }
     
+    /**
+     * Gets the bytes of the current token. The array is owned by the tokeniser
+     * and its content is only valid until the next token is read; only the
+     * first <CODE>getTokenLength()</CODE> bytes are meaningful.
+     * @return the bytes of the current token
+     * @since 2.1.8
+     */
+    public byte[] getTokenBytes() {
+        return tokenBytes;
+    }
+    
+    /**
+     * Gets the number of bytes of the current token.
+     * @return the number of bytes of the current token
+     * @since 2.1.8
+     */
+    public int getTokenLength() {
+        return tokenLength;
+    }
+    
+    /**
+     * Checks if the current token is equal to a string without creating
+     * a <CODE>String</CODE> from the token.
+     * @param value the string to compare. Only the chars up to 255 can match
+     * @return <CODE>true</CODE> if the token has the same chars as <CODE>value</CODE>
+     * @since 2.1.8
+     */
+    public boolean tokenValueEquals(String value) {
+        int len = value.length();
+        if (len != tokenLength)
+            return false;
+        for (int k = 0; k < len; ++k) {
+            if (value.charAt(k) != (tokenBytes[k] & 0xff))
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Gets the encoded form of the current name token, as expected by
+     * <CODE>PdfName(byte[])</CODE>.
+     * @return the name, including the leading '/'
+     * @since 2.1.8
+     */
+    public byte[] getNameBytes() {
+        if (!plainName)
+            return PdfName.encodeName(getStringValue());
+        byte b[] = new byte[tokenLength + 1];
+        b[0] = (byte)'/';
+        System.arraycopy(tokenBytes, 0, b, 1, tokenLength);
+        return b;
+    }
+    
+    /**
+     * Gets the current name token as a shared <CODE>PdfName</CODE>,
+     * see <CODE>PdfName.intern()</CODE>.
+     * @return the shared name
+     * @since 2.1.8
+     */
+    public PdfName getPdfName() {
+        if (!plainName)
+            return PdfName.intern(getNameBytes());
+        return PdfName.intern(tokenBytes, 0, tokenLength);
+    }
+    
+    /**
+     * Gets a copy of the bytes of the current token.
+     * @return a copy of the bytes of the current token
+     * @since 2.1.8
+     */
+    public byte[] copyTokenBytes() {
+        byte b[] = new byte[tokenLength];
+        System.arraycopy(tokenBytes, 0, b, 0, tokenLength);
+        return b;
+    }
+    
+    private void appendToken(int ch) {
+        if (tokenLength == tokenBytes.length) {
+            byte b[] = new byte[tokenLength * 2];
+            System.arraycopy(tokenBytes, 0, b, 0, tokenLength);
+            tokenBytes = b;
+        }
+        tokenBytes[tokenLength++] = (byte)ch;
+    }
+    
     public int getReference() {
         return reference;
     }
@@ -212,9 +327,9 @@ public class PRTokeniser {
         file.setStartOffset(idx);
     }
 
-    public int getStartxref() throws IOException {
-        int size = Math.min(1024, file.length());
-        int pos = file.length() - size;
+    public long getStartxref() throws IOException {
+        int size = (int)Math.min(1024, file.length());
+        long pos = file.length() - size;
         file.seek(pos);
         String str = readString(1024);
         int idx = str.lastIndexOf("startxref");
@@ -235,9 +350,10 @@ public class PRTokeniser {
     
     public void nextValidToken() throws IOException {
         int level = 0;
-        String n1 = null;
-        String n2 = null;
-        int ptr = 0;
+        int n1Length = 0;
+        int n2Length = 0;
+        byte b[];
+        long ptr = 0;
         while (nextToken()) {
             if (type == TK_COMMENT)
                 continue;
@@ -247,7 +363,11 @@ public class PRTokeniser {
                     if (type != TK_NUMBER)
                         return;
                     ptr = file.getFilePointer();
-                    n1 = stringValue;
+                    // keep the number by swapping the token buffer
+                    b = n1Bytes;
+                    n1Bytes = tokenBytes;
+                    tokenBytes = b;
+                    n1Length = tokenLength;
                     ++level;
                     break;
                 }
@@ -255,25 +375,26 @@ public class PRTokeniser {
                 {
                     if (type != TK_NUMBER) {
                         file.seek(ptr);
-                        type = TK_NUMBER;
-                        stringValue = n1;
+                        restoreNumber(n1Length);
                         return;
                     }
-                    n2 = stringValue;
+                    b = n2Bytes;
+                    n2Bytes = tokenBytes;
+                    tokenBytes = b;
+                    n2Length = tokenLength;
                     ++level;
                     break;
                 }
                 default:
                 {
-                    if (type != TK_OTHER || !stringValue.equals("R")) {
+                    if (type != TK_OTHER || tokenLength != 1 || tokenBytes[0] != 'R') {
                         file.seek(ptr);
-                        type = TK_NUMBER;
-                        stringValue = n1;
+                        restoreNumber(n1Length);
                         return;
                     }
                     type = TK_REF;
-                    reference = Integer.parseInt(n1);
-                    generation = Integer.parseInt(n2);
+                    reference = parseInt(n1Bytes, n1Length);
+                    generation = parseInt(n2Bytes, n2Length);
                     return;
                 }
             }
@@ -281,6 +402,19 @@ public class PRTokeniser {
         // if we hit here, the file is either corrupt (stream ended unexpectedly),
         // or the last token ended exactly at the end of a stream.  This last
         // case can occur inside an Object Stream.
+        if (level == 2)
+            file.seek(ptr);
+        if (level > 0)
+            restoreNumber(n1Length);
+    }
+    
+    private void restoreNumber(int n1Length) {
+        byte b[] = n1Bytes;
+        n1Bytes = tokenBytes;
+        tokenBytes = b;
+        tokenLength = n1Length;
+        type = TK_NUMBER;
+        stringValue = null;
     }
     
     public boolean nextToken() throws IOException {
@@ -294,8 +428,8 @@ public class PRTokeniser {
         // Note:  We have to initialize stringValue here, after we've looked for the end of the stream,
         // to ensure that we don't lose the value of a token that might end exactly at the end
         // of the stream
-        StringBuffer outBuf = null;
-        stringValue = EMPTY;
+        tokenLength = 0;
+        stringValue = null;
 
         switch (ch) {
             case '[':
@@ -306,16 +440,20 @@ public class PRTokeniser {
                 break;
             case '/':
             {
-                outBuf = new StringBuffer();
                 type = TK_NAME;
+                plainName = true;
                 while (true) {
                     ch = file.read();
                     if (delims[ch + 1])
                         break;
                     if (ch == '#') {
                         ch = (getHex(file.read()) << 4) + getHex(file.read());
+                        plainName = false;
+                    }
+                    else if (ch < 32 || ch > 126 || ch == '{' || ch == '}') {
+                        plainName = false;
                     }
-                    outBuf.append((char)ch);
+                    appendToken(ch);
                 }
                 backOnePosition(ch);
                 break;
@@ -333,7 +471,6 @@ public class PRTokeniser {
                     type = TK_START_DIC;
                     break;
                 }
-                outBuf = new StringBuffer();
                 type = TK_STRING;
                 hexString = true;
                 int v2 = 0;
@@ -350,14 +487,14 @@ public class PRTokeniser {
                         v2 = file.read();
                     if (v2 == '>') {
                         ch = v1 << 4;
-                        outBuf.append((char)ch);
+                        appendToken(ch);
                         break;
                     }
                     v2 = getHex(v2);
                     if (v2 < 0)
                         break;
                     ch = (v1 << 4) + v2;
-                    outBuf.append((char)ch);
+                    appendToken(ch);
                     v1 = file.read();
                 }
                 if (v1 < 0 || v2 < 0)
@@ -372,7 +509,6 @@ public class PRTokeniser {
                 break;
             case '(':
             {
-                outBuf = new StringBuffer();
                 type = TK_STRING;
                 hexString = false;
                 int nesting = 0;
@@ -458,7 +594,7 @@ public class PRTokeniser {
                     }
                     if (nesting == -1)
                         break;
-                    outBuf.append((char)ch);
+                    appendToken(ch);
                 }
                 if (ch == -1)
                     throwError("Error reading string");
@@ -466,18 +602,17 @@ public class PRTokeniser {
             }
             default:
             {
-                outBuf = new StringBuffer();
                 if (ch == '-' || ch == '+' || ch == '.' || (ch >= '0' && ch <= '9')) {
                     type = TK_NUMBER;
                     do {
-                        outBuf.append((char)ch);
+                        appendToken(ch);
                         ch = file.read();
                     } while (ch != -1 && ((ch >= '0' && ch <= '9') || ch == '.'));
                 }
                 else {
                     type = TK_OTHER;
                     do {
-                        outBuf.append((char)ch);
+                        appendToken(ch);
                         ch = file.read();
                     } while (!delims[ch + 1]);
                 }
@@ -485,13 +620,121 @@ public class PRTokeniser {
                 break;
             }
         }
-        if (outBuf != null)
-            stringValue = outBuf.toString();
         return true;
     }
     
     public int intValue() {
-        return Integer.parseInt(stringValue);
+        return parseInt(tokenBytes, tokenLength);
+    }
+    
+    /**
+     * Gets the value of a number token that can be larger than an <CODE>int</CODE>,
+     * such as a file offset.
+     * @return the value of the token
+     * @since 2.1.8
+     */
+    public long longValue() {
+        long v = parseLong(tokenBytes, tokenLength, 18);
+        if (v == Long.MIN_VALUE)
+            return Long.parseLong(getStringValue());
+        return v;
+    }
+    
+    /**
+     * Gets the value of a number token as a <CODE>double</CODE>. The common
+     * forms are parsed directly from the bytes of the token.
+     * @return the value of the token
+     * @throws NumberFormatException if the token is not a valid number
+     * @since 2.1.8
+     */
+    public double doubleValue() {
+        return parseDouble(tokenBytes, tokenLength);
+    }
+    
+    /**
+     * Parses the bytes of a number. The common forms are parsed directly,
+     * the others with <CODE>Double.parseDouble()</CODE>.
+     * @param b the bytes of the number
+     * @param len the number of bytes to parse
+     * @return the value of the number
+     * @throws NumberFormatException if the bytes are not a valid number
+     */
+    static double parseDouble(byte b[], int len) {
+        int k = 0;
+        boolean neg = false;
+        if (len > 0 && (b[0] == '-' || b[0] == '+')) {
+            neg = (b[0] == '-');
+            ++k;
+        }
+        long v = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; k < len; ++k) {
+            int c = b[k];
+            if (c >= '0' && c <= '9') {
+                v = v * 10 + (c - '0');
+                if (++digits > 15)
+                    return Double.parseDouble(toString(b, len));
+                if (decimals >= 0)
+                    ++decimals;
+            }
+            else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            }
+            else {
+                return Double.parseDouble(toString(b, len));
+            }
+        }
+        if (digits == 0)
+            return Double.parseDouble(toString(b, len));
+        // both operands are exact so the division is correctly rounded
+        double d = decimals > 0 ? v / POW10[decimals] : v;
+        return neg ? -d : d;
+    }
+    
+    private static String toString(byte b[], int len) {
+        char c[] = new char[len];
+        for (int k = 0; k < len; ++k)
+            c[k] = (char)(b[k] & 0xff);
+        return new String(c);
+    }
+    
+    private static final double POW10[] = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+        1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+    
+    /**
+     * Parses a decimal integer.
+     * @return the value or <CODE>Long.MIN_VALUE</CODE> if the bytes are not
+     * a plain integer with at most <CODE>maxDigits</CODE> digits
+     */
+    private static long parseLong(byte b[], int len, int maxDigits) {
+        int k = 0;
+        boolean neg = false;
+        if (len > 0 && b[0] == '-') {
+            neg = true;
+            ++k;
+        }
+        if (k == len || len - k > maxDigits)
+            return Long.MIN_VALUE;
+        long v = 0;
+        for (; k < len; ++k) {
+            int c = b[k] - '0';
+            if (c < 0 || c > 9)
+                return Long.MIN_VALUE;
+            v = v * 10 + c;
+        }
+        return neg ? -v : v;
+    }
+    
+    private static int parseInt(byte b[], int len) {
+        long v = parseLong(b, len, 9);
+        if (v == Long.MIN_VALUE) {
+            char c[] = new char[len];
+            for (int k = 0; k < len; ++k)
+                c[k] = (char)(b[k] & 0xff);
+            return Integer.parseInt(new String(c));
+        }
+        return (int)v;
     }
     
     public boolean readLineSegment(byte input[]) throws IOException {
@@ -513,7 +756,7 @@ public class PRTokeniser {
                     break;
                 case '\r':
                     eol = true;
-                    int cur = getFilePointer();
+                    long cur = getFilePointer();
                     if ((read()) != '\n') {
                         seek(cur);
                     }
@@ -541,7 +784,7 @@ public class PRTokeniser {
                         break;
                     case '\r':
                         eol = true;
-                        int cur = getFilePointer();
+                        long cur = getFilePointer();
                         if ((read()) != '\n') {
                             seek(cur);
                         }
@@ -573,7 +816,7 @@ public class PRTokeniser {
             gen = tk.intValue();
             if (!tk.nextToken())
                 return null;
-            if (!tk.getStringValue().equals("obj"))
+            if (!tk.tokenValueEquals("obj"))
                 return null;
             return new int[]{num, gen};
         }
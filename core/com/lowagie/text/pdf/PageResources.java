@@ -180,6 +180,21 @@ class PageResources {
         return resources;
     }
     
+    /**
+     * Checks if the only resources are fonts.
+     * @return <CODE>true</CODE> if there are no resources other than fonts
+     * @since 2.1.8
+     */
+    boolean hasOnlyFonts() {
+        return originalResources == null
+            && xObjectDictionary.size() == 0
+            && colorDictionary.size() == 0
+            && patternDictionary.size() == 0
+            && shadingDictionary.size() == 0
+            && extGStateDictionary.size() == 0
+            && propertyDictionary.size() == 0;
+    }
+    
     boolean hasResources() {
         return (fontDictionary.size() > 0
             || xObjectDictionary.size() > 0
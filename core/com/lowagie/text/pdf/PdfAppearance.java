@@ -46,6 +46,7 @@
  */
 
 package com.lowagie.text.pdf;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 import com.lowagie.text.Rectangle;
@@ -85,6 +86,13 @@ public class PdfAppearance extends PdfTemplate {
         stdFieldFontNames.put("KozMinPro-Regular", new PdfName("KaMi"));
     }
     
+    /**
+     * The fonts used, in the order they were set. It's shared with the
+     * duplicates, like the resources.
+     * @since 2.1.8
+     */
+    ArrayList usedFonts = new ArrayList();
+    
     /**
      *Creates a <CODE>PdfAppearance</CODE>.
      */
@@ -138,6 +146,18 @@ public class PdfAppearance extends PdfTemplate {
     public void setFontAndSize(BaseFont bf, float size) {
         checkWriter();
         state.size = size;
+        PdfName psn = addFont(bf);
+        content.append(psn.getBytes()).append(' ').append(size).append(" Tf").append_i(separator);
+    }
+
+    /**
+     * Makes a font the current font and adds it to the resources, without
+     * writing anything to the content.
+     * @param bf the font
+     * @return the name of the font in the resources
+     * @since 2.1.8
+     */
+    PdfName addFont(BaseFont bf) {
         if (bf.getFontType() == BaseFont.FONT_TYPE_DOCUMENT) {
             state.fontDetails = new FontDetails(null, ((DocumentFont)bf).getIndirectReference(), bf);
         }
@@ -155,7 +175,9 @@ public class PdfAppearance extends PdfTemplate {
         PageResources prs = getPageResources();
 //        PdfName name = state.fontDetails.getFontName();
         prs.addFont(psn, state.fontDetails.getIndirectReference());
-        content.append(psn.getBytes()).append(' ').append(size).append(" Tf").append_i(separator);
+        if (!usedFonts.contains(bf))
+            usedFonts.add(bf);
+        return psn;
     }
 
     public PdfContentByte getDuplicate() {
@@ -171,6 +193,7 @@ public class PdfAppearance extends PdfTemplate {
             tpl.matrix = new PdfArray(matrix);
         }
         tpl.separator = separator;
+        tpl.usedFonts = usedFonts;
         return tpl;
     }
 }
\ No newline at end of file
@@ -0,0 +1,253 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.ExceptionConverter;
+
+/**
+ * Concatenates any number of documents with a <CODE>PdfCopy</CODE> or a
+ * <CODE>PdfSmartCopy</CODE>, keeping the memory used the same however many
+ * documents there are.
+ * <P>
+ * Each document is opened in partial mode and freed from the copy as soon as
+ * its pages are added. While a document is being copied the next ones are
+ * opened and their cross-reference tables and page trees parsed in background
+ * threads. A typical use is:
+ * <pre>
+ * Document document = new Document();
+ * PdfCopy copy = new PdfCopy(document, new FileOutputStream("merged.pdf"));
+ * document.open();
+ * new PdfConcatenator(copy).concatenate(filenames.iterator());
+ * document.close();
+ * </pre>
+ * @since 2.1.8
+ */
+public class PdfConcatenator {
+
+    private PdfCopy copy;
+    /** The number of documents opened ahead. */
+    private int prefetch = 2;
+    private byte ownerPassword[];
+
+    /**
+     * Creates a concatenator that adds the pages to a copy.
+     * @param copy the copy; its document must be open
+     */
+    public PdfConcatenator(PdfCopy copy) {
+        this.copy = copy;
+    }
+
+    /**
+     * Sets the number of documents opened in background threads while
+     * another one is copied. With 0 each document is opened when its turn
+     * comes, in the calling thread. The default is 2.
+     * @param prefetch the number of documents opened ahead
+     */
+    public void setPrefetch(int prefetch) {
+        this.prefetch = Math.max(0, prefetch);
+    }
+
+    /**
+     * Gets the number of documents opened ahead.
+     * @return the number of documents opened ahead
+     */
+    public int getPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Sets the owner password used to open the encrypted documents.
+     * @param ownerPassword the password or <CODE>null</CODE> for no password
+     */
+    public void setOwnerPassword(byte ownerPassword[]) {
+        this.ownerPassword = ownerPassword;
+    }
+
+    /**
+     * Adds the pages of all the documents, in order. The documents can be
+     * given as file names, <CODE>URL</CODE>s, <CODE>byte</CODE> arrays,
+     * <CODE>InputStream</CODE>s, <CODE>RandomAccessFileOrArray</CODE>s or
+     * <CODE>PdfReader</CODE>s; the readers are closed once copied.
+     * The iterator is only used from the calling thread.
+     * @param sources the documents
+     * @return the number of pages added
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public int concatenate(Iterator sources) throws IOException, DocumentException {
+        int pages = 0;
+        if (prefetch == 0) {
+            while (sources.hasNext())
+                pages += copy(openSource(sources.next()));
+            return pages;
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(prefetch, prefetch, 5, TimeUnit.SECONDS, new LinkedBlockingQueue(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "iText concatenation");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        LinkedList pending = new LinkedList();
+        try {
+            while (true) {
+                while (pending.size() < prefetch && sources.hasNext())
+                    pending.add(pool.submit(new Opener(sources.next())));
+                if (pending.isEmpty())
+                    break;
+                pages += copy(getReader((Future)pending.removeFirst()));
+            }
+        }
+        finally {
+            pool.shutdown();
+            // close the documents already opened if there was an error
+            while (!pending.isEmpty()) {
+                try {
+                    getReader((Future)pending.removeFirst()).close();
+                }
+                catch (Exception e) {
+                    // empty on purpose
+                }
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Adds the pages of a document to the copy. It can be overridden to
+     * select the pages to add or to copy other parts of the document;
+     * the reader is freed from the copy afterwards.
+     * @param reader the document
+     * @return the number of pages added
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    protected int addPages(PdfReader reader) throws IOException, DocumentException {
+        int n = reader.getNumberOfPages();
+        for (int k = 1; k <= n; ++k)
+            copy.addPage(copy.getImportedPage(reader, k));
+        return n;
+    }
+
+    /**
+     * Opens a document in partial mode. It may be called from any thread.
+     * @param source the document
+     * @return the reader
+     * @throws IOException on error
+     */
+    protected PdfReader openSource(Object source) throws IOException {
+        if (source instanceof PdfReader)
+            return (PdfReader)source;
+        RandomAccessFileOrArray file;
+        if (source instanceof String)
+            file = new RandomAccessFileOrArray((String)source);
+        else if (source instanceof byte[])
+            file = new RandomAccessFileOrArray((byte[])source);
+        else if (source instanceof URL)
+            file = new RandomAccessFileOrArray((URL)source);
+        else if (source instanceof InputStream)
+            file = new RandomAccessFileOrArray((InputStream)source);
+        else if (source instanceof RandomAccessFileOrArray)
+            file = (RandomAccessFileOrArray)source;
+        else
+            throw new IllegalArgumentException("Unsupported document source: " + (source == null ? "null" : source.getClass().getName()));
+        return new PdfReader(file, ownerPassword);
+    }
+
+    private int copy(PdfReader reader) throws IOException, DocumentException {
+        try {
+            return addPages(reader);
+        }
+        finally {
+            copy.freeReader(reader);
+            reader.close();
+        }
+    }
+
+    private static PdfReader getReader(Future future) throws IOException {
+        try {
+            return (PdfReader)future.get();
+        }
+        catch (InterruptedException e) {
+            throw new ExceptionConverter(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            throw new ExceptionConverter(new Exception(cause));
+        }
+    }
+
+    private class Opener implements Callable {
+        private Object source;
+
+        Opener(Object source) {
+            this.source = source;
+        }
+
+        public Object call() throws IOException {
+            return openSource(source);
+        }
+    }
+}
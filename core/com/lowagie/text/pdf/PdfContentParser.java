@@ -127,7 +127,7 @@ public class PdfContentParser {
                     break;
                 if (tokeniser.getTokenType() != PRTokeniser.TK_NAME)
                     throw new IOException("Dictionary key is not a name.");
-                PdfName name = new PdfName(tokeniser.getStringValue(), false);
+                PdfName name = tokeniser.getPdfName();
                 PdfObject obj = readPRObject();
                 int type = obj.type();
                 if (-type == PRTokeniser.TK_END_DIC)
@@ -166,6 +166,16 @@ public class PdfContentParser {
     public PdfObject readPRObject() throws IOException {
         if (!nextValidToken())
             return null;
+        return readCurrentObject();
+    }
+    
+    /**
+     * Reads a pdf object that starts with the current token of the tokeniser.
+     * @return the pdf object
+     * @throws IOException on error
+     * @since 2.1.8
+     */    
+    public PdfObject readCurrentObject() throws IOException {
         int type = tokeniser.getTokenType();
         switch (type) {
             case PRTokeniser.TK_START_DIC: {
@@ -175,12 +185,12 @@ public class PdfContentParser {
             case PRTokeniser.TK_START_ARRAY:
                 return readArray();
             case PRTokeniser.TK_STRING:
-                PdfString str = new PdfString(tokeniser.getStringValue(), null).setHexWriting(tokeniser.isHexString());
+                PdfString str = new PdfString(tokeniser.copyTokenBytes(), tokeniser.isHexString());
                 return str;
             case PRTokeniser.TK_NAME:
-                return new PdfName(tokeniser.getStringValue(), false);
+                return tokeniser.getPdfName();
             case PRTokeniser.TK_NUMBER:
-                return new PdfNumber(tokeniser.getStringValue());
+                return new PdfNumber(tokeniser.copyTokenBytes());
             case PRTokeniser.TK_OTHER:
                 return new PdfLiteral(COMMAND_TYPE, tokeniser.getStringValue());
             default:
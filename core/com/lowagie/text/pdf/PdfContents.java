@@ -84,14 +84,15 @@ class PdfContents extends PdfStream {
     
     PdfContents(PdfContentByte under, PdfContentByte content, PdfContentByte text, PdfContentByte secondContent, Rectangle page) throws BadPdfFormatException {
         super();
+        PdfWriter writer = text.getPdfWriter();
         try {
             OutputStream out = null;
             Deflater deflater = null;
             streamBytes = new ByteArrayOutputStream();
-            if (Document.compress)
+            if (Document.compress && !writer.isParallelCompression())
             {
                 compressed = true;
-                compressionLevel = text.getPdfWriter().getCompressionLevel();
+                compressionLevel = writer.getCompressionLevel();
                 deflater = new Deflater(compressionLevel);
                 out = new DeflaterOutputStream(streamBytes, deflater);
             }
@@ -150,5 +151,7 @@ class PdfContents extends PdfStream {
         put(PdfName.LENGTH, new PdfNumber(streamBytes.size()));
         if (compressed)
             put(PdfName.FILTER, PdfName.FLATEDECODE);
+        else
+            flateCompress(writer.getCompressionLevel(), writer);
     }
 }
\ No newline at end of file
@@ -401,7 +401,7 @@ public class PdfEncryption {
 	public static PdfObject createInfoId(byte id[]) {
 		ByteBuffer buf = new ByteBuffer(90);
 		buf.append('[').append('<');
-		for (int k = 0; k < 16; ++k)
+		for (int k = 0; k < id.length; ++k)
 			buf.appendHex(id[k]);
 		buf.append('>').append('<');
 		id = createDocumentId();
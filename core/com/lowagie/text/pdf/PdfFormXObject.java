@@ -93,7 +93,7 @@ public class PdfFormXObject extends PdfStream {
             put(PdfName.MATRIX, matrix);
         bytes = template.toPdf(null);
         put(PdfName.LENGTH, new PdfNumber(bytes.length));
-        flateCompress(compressionLevel);
+        flateCompress(compressionLevel, template.getPdfWriter());
     }
     
 }
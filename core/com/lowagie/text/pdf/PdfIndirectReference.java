@@ -49,6 +49,9 @@
 
 package com.lowagie.text.pdf;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 /**
  * <CODE>PdfIndirectReference</CODE> contains a reference to a <CODE>PdfIndirectObject</CODE>.
  * <P>
@@ -88,7 +91,7 @@ public class PdfIndirectReference extends PdfObject {
  */
     
     PdfIndirectReference(int type, int number, int generation) {
-        super(0, new StringBuffer().append(number).append(" ").append(generation).append(" R").toString());
+        super(0);
         this.number = number;
         this.generation = generation;
     }
@@ -126,6 +129,19 @@ public class PdfIndirectReference extends PdfObject {
         return generation;
     }
     
+/**
+ * Writes the reference. The text is not kept in the object, as there is
+ * one reference for each page of the document in <CODE>PdfWriter</CODE>.
+ * @since 2.1.8
+ */
+    
+    public void toPdf(PdfWriter writer, OutputStream os) throws IOException {
+        if (os instanceof ByteBuffer)
+            ((ByteBuffer)os).append(number).append(' ').append(generation).append(" R");
+        else
+            os.write(PdfEncodings.convertToBytes(toString(), null));
+    }
+    
     public String toString() {
     	return new StringBuffer().append(number).append(" ").append(generation).append(" R").toString();
     }
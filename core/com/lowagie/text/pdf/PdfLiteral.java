@@ -58,7 +58,7 @@ public class PdfLiteral extends PdfObject {
     /**
      * Holds value of property position.
      */
-    private int position;
+    private long position;
         
     public PdfLiteral(String text) {
         super(0, text);
@@ -91,9 +91,12 @@ public class PdfLiteral extends PdfObject {
     /**
      * Getter for property position.
      * @return Value of property position.
+     * @throws IllegalStateException if the position is beyond 2 GB
      */
     public int getPosition() {
-        return this.position;
+        if (position > Integer.MAX_VALUE)
+            throw new IllegalStateException("The literal is at " + position + ", beyond the 2 GB that can be addressed.");
+        return (int)position;
     }
     
     /**
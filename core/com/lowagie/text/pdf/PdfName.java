@@ -49,6 +49,9 @@
 
 package com.lowagie.text.pdf;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.*;
@@ -73,6 +76,12 @@ import java.util.*;
 
 public class PdfName extends PdfObject implements Comparable{
 
+    /**
+     * The shared names, looked up by their bytes. It must be created
+     * before the constants.
+     */
+    private static final NameTable internedNames = new NameTable();
+
     // CLASS CONSTANTS (a variety of standard names used in PDF))
     /**
      * A name.
@@ -1742,6 +1751,7 @@ public class PdfName extends PdfObject implements Comparable{
                     curFld.getType().equals( PdfName.class )) {
                     PdfName name = (PdfName)curFld.get( null );
                     staticNames.put( decodeName( name.toString() ), name );
+                    internedNames.put( name );
                 }
             }
         } catch (Exception e) {
@@ -1787,6 +1797,37 @@ public class PdfName extends PdfObject implements Comparable{
         super(PdfObject.NAME, bytes);
     }
 
+    /**
+     * Gets a shared <CODE>PdfName</CODE> with the given bytes. Equal names
+     * interned this way are the same object, which makes their comparisons
+     * and hashing faster. The names not referenced anywhere else can be
+     * garbage collected. The shared names must not be modified and can't
+     * be direct objects of an indirect reference.
+     *
+     * @param bytes the byte representation of the name, including the leading '/'
+     * @return the shared name
+     * @since 2.1.8
+     */
+    public static PdfName intern(byte bytes[]) {
+        if (bytes.length == 0 || bytes[0] != '/')
+            return new PdfName(bytes);
+        return internedNames.intern(bytes, 1, bytes.length - 1);
+    }
+
+    /**
+     * Gets a shared <CODE>PdfName</CODE> from the bytes of a name that
+     * doesn't need escaping.
+     *
+     * @param name the bytes of the name, without the leading '/'
+     * @param offset the start of the name in <CODE>name</CODE>
+     * @param length the length of the name
+     * @return the shared name
+     * @since 2.1.8
+     */
+    static PdfName intern(byte name[], int offset, int length) {
+        return internedNames.intern(name, offset, length);
+    }
+
     // CLASS METHODS
 
     /**
@@ -1828,8 +1869,14 @@ public class PdfName extends PdfObject implements Comparable{
     public boolean equals(Object obj) {
         if (this == obj)
             return true;
-        if (obj instanceof PdfName)
+        if (obj instanceof PdfName) {
+            PdfName name = (PdfName)obj;
+            if (bytes == name.bytes)
+                return true;
+            if (bytes.length != name.bytes.length || hash != 0 && name.hash != 0 && hash != name.hash)
+                return false;
             return compareTo(obj) == 0;
+        }
         return false;
     }
 
@@ -1925,4 +1972,146 @@ public class PdfName extends PdfObject implements Comparable{
         }
         return buf.toString();
     }
+
+    /**
+     * A table of weakly referenced names looked up by their bytes. It's split
+     * in segments with their own lock so that several threads can use it at
+     * the same time.
+     */
+    private static class NameTable {
+
+        private static final int SEGMENTS = 16;
+
+        private final Segment segments[] = new Segment[SEGMENTS];
+
+        NameTable() {
+            for (int k = 0; k < SEGMENTS; ++k)
+                segments[k] = new Segment();
+        }
+
+        /**
+         * Computes the same hash as <CODE>PdfName.hashCode()</CODE>
+         * for the name with the leading '/'.
+         */
+        private static int hash(byte name[], int offset, int length) {
+            int h = '/';
+            int end = offset + length;
+            for (int k = offset; k < end; ++k)
+                h = 31 * h + (name[k] & 0xff);
+            return h;
+        }
+
+        private Segment segmentFor(int h) {
+            return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+        }
+
+        PdfName intern(byte name[], int offset, int length) {
+            int h = hash(name, offset, length);
+            return segmentFor(h).intern(name, offset, length, h);
+        }
+
+        void put(PdfName name) {
+            int h = name.hashCode();
+            segmentFor(h).intern(name.bytes, 1, name.bytes.length - 1, h, name);
+        }
+    }
+
+    private static class NameEntry extends WeakReference {
+        final int hash;
+        NameEntry next;
+
+        NameEntry(PdfName name, int hash, NameEntry next, ReferenceQueue queue) {
+            super(name, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    private static class Segment {
+
+        private NameEntry table[] = new NameEntry[64];
+        private int count;
+        private final ReferenceQueue queue = new ReferenceQueue();
+
+        private static boolean matches(PdfName name, byte b[], int offset, int length) {
+            byte bytes[] = name.bytes;
+            if (bytes.length != length + 1)
+                return false;
+            for (int k = 0; k < length; ++k) {
+                if (bytes[k + 1] != b[offset + k])
+                    return false;
+            }
+            return true;
+        }
+
+        synchronized PdfName get(byte b[], int offset, int length, int h) {
+            for (NameEntry e = table[h & (table.length - 1)]; e != null; e = e.next) {
+                if (e.hash == h) {
+                    PdfName name = (PdfName)e.get();
+                    if (name != null && matches(name, b, offset, length))
+                        return name;
+                }
+            }
+            return null;
+        }
+
+        PdfName intern(byte b[], int offset, int length, int h) {
+            return intern(b, offset, length, h, null);
+        }
+
+        synchronized PdfName intern(byte b[], int offset, int length, int h, PdfName newName) {
+            PdfName name = get(b, offset, length, h);
+            if (name != null)
+                return name;
+            expunge();
+            if (newName == null) {
+                byte bytes[] = new byte[length + 1];
+                bytes[0] = '/';
+                System.arraycopy(b, offset, bytes, 1, length);
+                newName = new PdfName(bytes);
+                newName.hash = h;
+            }
+            if (count >= table.length * 3 / 4)
+                rehash();
+            int idx = h & (table.length - 1);
+            table[idx] = new NameEntry(newName, h, table[idx], queue);
+            ++count;
+            return newName;
+        }
+
+        private void rehash() {
+            NameEntry newTable[] = new NameEntry[table.length * 2];
+            for (int k = 0; k < table.length; ++k) {
+                NameEntry e = table[k];
+                while (e != null) {
+                    NameEntry next = e.next;
+                    int idx = e.hash & (newTable.length - 1);
+                    e.next = newTable[idx];
+                    newTable[idx] = e;
+                    e = next;
+                }
+            }
+            table = newTable;
+        }
+
+        /** Removes the entries of the names already collected. */
+        private void expunge() {
+            Reference ref;
+            while ((ref = queue.poll()) != null) {
+                NameEntry stale = (NameEntry)ref;
+                int idx = stale.hash & (table.length - 1);
+                NameEntry prev = null;
+                for (NameEntry e = table[idx]; e != null; prev = e, e = e.next) {
+                    if (e == stale) {
+                        if (prev == null)
+                            table[idx] = e.next;
+                        else
+                            prev.next = e.next;
+                        --count;
+                        break;
+                    }
+                }
+            }
+        }
+    }
 }
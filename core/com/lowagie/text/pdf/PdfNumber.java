@@ -70,6 +70,9 @@ public class PdfNumber extends PdfObject {
      */
     private double value;
     
+    /** <CODE>true</CODE> if the value of a number read from a document wasn't parsed yet. */
+    private volatile boolean pending;
+    
     // CONSTRUCTORS
     
     /**
@@ -88,6 +91,19 @@ public class PdfNumber extends PdfObject {
         }
     }
     
+    /**
+     * Constructs a <CODE>PdfNumber</CODE>-object read from a document.
+     * The value is only parsed when it's needed, otherwise the original
+     * bytes are written back.
+     *
+     * @param content the bytes of the number, as read
+     * @since 2.1.8
+     */
+    PdfNumber(byte content[]) {
+        super(NUMBER, content);
+        pending = true;
+    }
+    
     /**
      * Constructs a new <CODE>PdfNumber</CODE>-object of type integer.
      *
@@ -99,6 +115,18 @@ public class PdfNumber extends PdfObject {
         setContent(String.valueOf(value));
     }
     
+    /**
+     * Constructs a new <CODE>PdfNumber</CODE>-object of type long.
+     *
+     * @param value    value of the new <CODE>PdfNumber</CODE>-object
+     * @since 2.1.8
+     */
+    public PdfNumber(long value) {
+        super(NUMBER);
+        this.value = value;
+        setContent(String.valueOf(value));
+    }
+    
     /**
      * Constructs a new <CODE>PdfNumber</CODE>-object of type real.
      *
@@ -127,7 +155,17 @@ public class PdfNumber extends PdfObject {
      * @return The value as <CODE>int</CODE>
      */
     public int intValue() {
-        return (int) value;
+        return (int) doubleValue();
+    }
+    
+    /**
+     * Returns the primitive <CODE>long</CODE> value of this object.
+     *
+     * @return The value as <CODE>long</CODE>
+     * @since 2.1.8
+     */
+    public long longValue() {
+        return (long) doubleValue();
     }
     
     /**
@@ -136,6 +174,15 @@ public class PdfNumber extends PdfObject {
      * @return The value as <CODE>double</CODE>
      */
     public double doubleValue() {
+        if (pending) {
+            try {
+                value = PRTokeniser.parseDouble(bytes, bytes.length);
+            }
+            catch (NumberFormatException nfe) {
+                throw new RuntimeException(toString() + " is not a valid number - " + nfe.toString());
+            }
+            pending = false;
+        }
         return value;
     }
     
@@ -145,7 +192,7 @@ public class PdfNumber extends PdfObject {
      * @return The value as <CODE>float</CODE>
      */
     public float floatValue() {
-        return (float)value;
+        return (float)doubleValue();
     }
     
     // other methods
@@ -154,7 +201,7 @@ public class PdfNumber extends PdfObject {
      * Increments the value of the <CODE>PdfNumber</CODE>-object by 1.
      */
     public void increment() {
-        value += 1.0;
+        value = doubleValue() + 1.0;
         setContent(ByteBuffer.formatDouble(value));
     }
 }
\ No newline at end of file
@@ -69,12 +69,29 @@ import com.lowagie.text.ExceptionConverter;
 
 public class PdfPages {
     
-    private ArrayList pages = new ArrayList();
-    private ArrayList parents = new ArrayList();
+    /**
+     * The nodes still open, one for each level of the tree starting with
+     * the leaves. The nodes that are full are written as soon as the next
+     * node of their level is started, so only one node per level is kept
+     * in memory however many pages the document has.
+     */
+    private ArrayList levels = new ArrayList();
+    private int pageCount;
     private int leafSize = 10;
     private PdfWriter writer;
     private PdfIndirectReference topParent;
     
+    /** A node of the page tree that is not written yet. */
+    private static class Node {
+        PdfIndirectReference ref;
+        ArrayList kids = new ArrayList();
+        int count;
+        
+        Node(PdfIndirectReference ref) {
+            this.ref = ref;
+        }
+    }
+    
     // constructors
     
 /**
@@ -87,13 +104,11 @@ public class PdfPages {
     
     void addPage(PdfDictionary page) {
         try {
-            if ((pages.size() % leafSize) == 0)
-                parents.add(writer.getPdfIndirectReference());
-            PdfIndirectReference parent = (PdfIndirectReference)parents.get(parents.size() - 1);
-            page.put(PdfName.PARENT, parent);
             PdfIndirectReference current = writer.getCurrentPage();
+            PdfIndirectReference parent = addKid(0, current, 1);
+            ++pageCount;
+            page.put(PdfName.PARENT, parent);
             writer.addToBody(page, current);
-            pages.add(current);
         }
         catch (Exception e) {
             throw new ExceptionConverter(e);
@@ -102,65 +117,76 @@ public class PdfPages {
     
     PdfIndirectReference addPageRef(PdfIndirectReference pageRef) {
         try {
-            if ((pages.size() % leafSize) == 0)
-                parents.add(writer.getPdfIndirectReference());
-            pages.add(pageRef);
-            return (PdfIndirectReference)parents.get(parents.size() - 1);
+            PdfIndirectReference parent = addKid(0, pageRef, 1);
+            ++pageCount;
+            return parent;
         }
         catch (Exception e) {
             throw new ExceptionConverter(e);
         }
     }
     
+    /**
+     * Adds a kid to the open node of a level. If that node is full it's
+     * written and a new one is started.
+     * @param level the level, 0 for the leaves
+     * @param kid the kid
+     * @param count the number of pages of the kid
+     * @return the node the kid was added to
+     * @throws IOException on error
+     */
+    private PdfIndirectReference addKid(int level, PdfIndirectReference kid, int count) throws IOException {
+        Node node = level < levels.size() ? (Node)levels.get(level) : null;
+        if (node != null && node.kids.size() >= leafSize) {
+            writeNode(level, false);
+            node = null;
+        }
+        if (node == null) {
+            node = new Node(writer.getPdfIndirectReference());
+            if (level < levels.size())
+                levels.set(level, node);
+            else
+                levels.add(node);
+        }
+        node.kids.add(kid);
+        node.count += count;
+        return node.ref;
+    }
+    
+    /**
+     * Writes the open node of a level, adding it to its parent. The node
+     * at the top level is the root.
+     * @param level the level
+     * @param root <CODE>true</CODE> if the node is the root, without parent
+     * @throws IOException on error
+     */
+    private void writeNode(int level, boolean root) throws IOException {
+        Node node = (Node)levels.get(level);
+        PdfDictionary top = new PdfDictionary(PdfName.PAGES);
+        top.put(PdfName.COUNT, new PdfNumber(node.count));
+        PdfArray kids = new PdfArray();
+        kids.getArrayList().addAll(node.kids);
+        top.put(PdfName.KIDS, kids);
+        if (root) {
+            top.put(PdfName.ITXT, new PdfString(Document.getRelease()));
+        }
+        else {
+            PdfIndirectReference parent = addKid(level + 1, node.ref, node.count);
+            top.put(PdfName.PARENT, parent);
+        }
+        writer.addToBody(top, node.ref);
+    }
+    
     // returns the top parent to include in the catalog
     PdfIndirectReference writePageTree() throws IOException {
-        if (pages.isEmpty())
+        if (pageCount == 0)
             throw new IOException("The document has no pages.");
-        int leaf = 1;
-        ArrayList tParents = parents;
-        ArrayList tPages = pages;
-        ArrayList nextParents = new ArrayList();
-        while (true) {
-            leaf *= leafSize;
-            int stdCount = leafSize;
-            int rightCount = tPages.size() % leafSize;
-            if (rightCount == 0)
-                rightCount = leafSize;
-            for (int p = 0; p < tParents.size(); ++p) {
-                int count;
-                int thisLeaf = leaf;
-                if (p == tParents.size() - 1) {
-                    count = rightCount;
-                    thisLeaf = pages.size() % leaf;
-                    if (thisLeaf == 0)
-                        thisLeaf = leaf;
-                }
-                else
-                    count = stdCount;
-                PdfDictionary top = new PdfDictionary(PdfName.PAGES);
-                top.put(PdfName.COUNT, new PdfNumber(thisLeaf));
-                PdfArray kids = new PdfArray();
-                ArrayList internal = kids.getArrayList();
-                internal.addAll(tPages.subList(p * stdCount, p * stdCount + count));
-                top.put(PdfName.KIDS, kids);
-                if (tParents.size() > 1) {
-                    if ((p % leafSize) == 0)
-                        nextParents.add(writer.getPdfIndirectReference());
-                    top.put(PdfName.PARENT, (PdfIndirectReference)nextParents.get(p / leafSize));
-                }
-                else {
-                	top.put(PdfName.ITXT, new PdfString(Document.getRelease()));
-                }
-                writer.addToBody(top, (PdfIndirectReference)tParents.get(p));
-            }
-            if (tParents.size() == 1) {
-                topParent = (PdfIndirectReference)tParents.get(0);
-                return topParent;
-            }
-            tPages = tParents;
-            tParents = nextParents;
-            nextParents = new ArrayList();
-        }
+        for (int level = 0; level < levels.size() - 1; ++level)
+            writeNode(level, false);
+        int top = levels.size() - 1;
+        topParent = ((Node)levels.get(top)).ref;
+        writeNode(top, true);
+        return topParent;
     }
     
     PdfIndirectReference getTopParent() {
@@ -168,28 +194,32 @@ public class PdfPages {
     }
     
     void setLinearMode(PdfIndirectReference topParent) {
-        if (parents.size() > 1)
+        if (levels.size() > 1)
             throw new RuntimeException("Linear page mode can only be called with a single parent.");
         if (topParent != null) {
             this.topParent = topParent;
-            parents.clear();
-            parents.add(topParent);
+            if (levels.isEmpty())
+                levels.add(new Node(topParent));
+            else
+                ((Node)levels.get(0)).ref = topParent;
         }
         leafSize = 10000000;
     }
 
     void addPage(PdfIndirectReference page) {
-        pages.add(page);
+        addPageRef(page);
     }
 
     int reorderPages(int order[]) throws DocumentException {
         if (order == null)
-            return pages.size();
-        if (parents.size() > 1)
+            return pageCount;
+        if (levels.size() > 1)
             throw new DocumentException("Page reordering requires a single parent in the page tree. Call PdfWriter.setLinearMode() after open.");
-        if (order.length != pages.size())
+        if (order.length != pageCount)
             throw new DocumentException("Page reordering requires an array with the same size as the number of pages.");
-        int max = pages.size();
+        if (pageCount == 0)
+            return 0;
+        int max = pageCount;
         boolean temp[] = new boolean[max];
         for (int k = 0; k < max; ++k) {
             int p = order[k];
@@ -199,10 +229,11 @@ public class PdfPages {
                 throw new DocumentException("Page reordering requires no page repetition. Page " + p + " is repeated.");
             temp[p - 1] = true;
         }
+        ArrayList pages = ((Node)levels.get(0)).kids;
         Object copy[] = pages.toArray();
         for (int k = 0; k < max; ++k) {
             pages.set(k, copy[order[k] - 1]);
         }
         return max;
     }
-}
\ No newline at end of file
+}
@@ -49,20 +49,31 @@
 
 package com.lowagie.text.pdf;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.InflaterInputStream;
 import java.util.Stack;
 import java.security.Key;
@@ -82,6 +93,14 @@ import org.bouncycastle.cms.CMSEnvelopedData;
 import org.bouncycastle.cms.RecipientInformation;
 
 /** Reads a PDF document.
+ * <p>
+ * Once a document is read, the methods that only read it, like
+ * <CODE>getPageN()</CODE>, <CODE>getPageContent()</CODE>,
+ * <CODE>getPdfObject()</CODE> and <CODE>getStreamBytes()</CODE>, can be
+ * called from several threads at the same time, also in partial mode.
+ * Each call that needs the file data uses its own view of the file and,
+ * in partial mode, the object table is locked while the objects are parsed.
+ * The methods that change the document are not thread safe.
  * @author Paulo Soares (psoares@consiste.pt)
  * @author Kazuya Ujihara
  */
@@ -94,12 +113,19 @@ public class PdfReader implements PdfViewerPreferences {
     static final byte endstream[] = PdfEncodings.convertToBytes("endstream", null);
     static final byte endobj[] = PdfEncodings.convertToBytes("endobj", null);
     protected PRTokeniser tokens;
+    /**
+     * The file of the document. It's the file of <CODE>tokens</CODE> except
+     * while an object stream is parsed, when <CODE>tokens</CODE> reads the
+     * bytes of the stream.
+     */
+    private RandomAccessFileOrArray file;
     // Each xref pair is a position
     // type 0 -> -1, 0
     // type 1 -> offset, 0
     // type 2 -> index, obj num
-    protected int xref[];
+    protected long xref[];
     protected HashMap objStmMark;
+    /** In partial mode, the numbers of the object streams; the values are not used. */
     protected IntHashtable objStmToOffset;
     protected boolean newXrefType;
     private ArrayList xrefObj;
@@ -113,8 +139,8 @@ public class PdfReader implements PdfViewerPreferences {
     protected boolean rebuilt = false;
     protected int freeXref;
     protected boolean tampered = false;
-    protected int lastXref;
-    protected int eofPos;
+    protected long lastXref;
+    protected long eofPos;
     protected char pdfVersion;
     protected PdfEncryption decrypt;
     protected byte password[] = null; //added by ujihara for decryption
@@ -129,10 +155,19 @@ public class PdfReader implements PdfViewerPreferences {
     protected int pValue;
     private int objNum;
     private int objGen;
-    private int fileLength;
+    private long fileLength;
     private boolean hybridXref;
     private int lastXrefPartial = -1;
     private boolean partial;
+    /**
+     * The number of threads decoding the object streams in full mode and
+     * scanning a damaged file.
+     */
+    private int threads = 1;
+    private ObjectCache objectCache;
+    /** The fonts used by the text extraction, by object number. */
+    private Map fontCache;
+    private int fontCacheSize = 64;
 
     private PRIndirectReference cryptoRef;
 	private PdfViewerPreferencesImp viewerPreferences = new PdfViewerPreferencesImp();
@@ -257,6 +292,32 @@ public class PdfReader implements PdfViewerPreferences {
         readPdfPartial();
     }
 
+    /**
+     * Reads and parses a PDF document with several threads. In full mode
+     * the object streams are decoded by the threads; documents with many
+     * object streams open faster with more threads. If the cross-reference
+     * table has to be rebuilt, files larger than 8 MB are scanned by the
+     * threads in sections.
+     * @param raf the document location
+     * @param ownerPassword the password or <CODE>null</CODE> for no password
+     * @param partial <CODE>true</CODE> to read the document in partial mode,
+     * like <CODE>PdfReader(RandomAccessFileOrArray, byte[])</CODE>
+     * @param threads the number of threads, 1 to read the document in the
+     * calling thread
+     * @throws IOException on error
+     * @since 2.1.8
+     */
+    public PdfReader(RandomAccessFileOrArray raf, byte ownerPassword[], boolean partial, int threads) throws IOException {
+        password = ownerPassword;
+        this.partial = partial;
+        this.threads = threads;
+        tokens = new PRTokeniser(raf);
+        if (partial)
+            readPdfPartial();
+        else
+            readPdf();
+    }
+
     /** Creates an independent duplicate.
      * @param reader the <CODE>PdfReader</CODE> to duplicate
      */
@@ -272,7 +333,8 @@ public class PdfReader implements PdfViewerPreferences {
         this.eofPos = reader.eofPos;
         this.freeXref = reader.freeXref;
         this.lastXref = reader.lastXref;
-        this.tokens = new PRTokeniser(reader.tokens.getSafeFile());
+        this.tokens = new PRTokeniser(reader.getSafeFile());
+        this.file = tokens.getFile();
         if (reader.decrypt != null)
             this.decrypt = new PdfEncryption(reader.decrypt);
         this.pValue = reader.pValue;
@@ -294,11 +356,56 @@ public class PdfReader implements PdfViewerPreferences {
         this.ownerPasswordUsed = reader.ownerPasswordUsed;
     }
 
+    /**
+     * Opens in partial mode another copy of a document already opened in
+     * partial mode. The cross-reference table and the trailer already
+     * parsed are copied instead of being read again; the other objects are
+     * read from the file as needed. The two readers are independent and
+     * the original one can be used to open more copies from several
+     * threads, as long as it's not modified.
+     * @param reader the document opened in partial mode
+     * @param file the document data, the same as the one read by <CODE>reader</CODE>
+     * @throws IOException on error
+     * @since 2.1.8
+     */
+    PdfReader(PdfReader reader, RandomAccessFileOrArray file) throws IOException {
+        if (!reader.partial)
+            throw new IllegalArgumentException("The document must be opened in partial mode.");
+        partial = true;
+        password = reader.password;
+        certificate = reader.certificate;
+        certificateKey = reader.certificateKey;
+        certificateKeyProvider = reader.certificateKeyProvider;
+        tokens = new PRTokeniser(file);
+        this.file = file;
+        fileLength = reader.fileLength;
+        pdfVersion = reader.pdfVersion;
+        rebuilt = reader.rebuilt;
+        lastXref = reader.lastXref;
+        eofPos = reader.eofPos;
+        newXrefType = reader.newXrefType;
+        hybridXref = reader.hybridXref;
+        objStmToOffset = reader.objStmToOffset;
+        xref = reader.xref.clone();
+        trailer = (PdfDictionary)duplicatePdfObject(reader.trailer, this);
+        try {
+            readDocObjPartial();
+            readPages();
+        }
+        catch (IOException e) {
+            try{tokens.close();}catch(Exception ee){}
+            throw e;
+        }
+    }
+
     /** Gets a new file instance of the original PDF
      * document.
      * @return a new file instance of the original PDF document
      */
     public RandomAccessFileOrArray getSafeFile() {
+        // tokens may be reading an object stream in another thread
+        if (file != null)
+            return new RandomAccessFileOrArray(file);
         return tokens.getSafeFile();
     }
 
@@ -486,7 +593,8 @@ public class PdfReader implements PdfViewerPreferences {
 
     protected void readPdf() throws IOException {
         try {
-            fileLength = tokens.getFile().length();
+            file = tokens.getFile();
+            fileLength = file.length();
             pdfVersion = tokens.checkPdfHeader();
             try {
                 readXref();
@@ -533,7 +641,8 @@ public class PdfReader implements PdfViewerPreferences {
 
     protected void readPdfPartial() throws IOException {
         try {
-            fileLength = tokens.getFile().length();
+            file = tokens.getFile();
+            fileLength = file.length();
             pdfVersion = tokens.checkPdfHeader();
             try {
                 readXref();
@@ -790,11 +899,32 @@ public class PdfReader implements PdfViewerPreferences {
      * @return a PdfObject
      */
     public static PdfObject getPdfObjectRelease(PdfObject obj) {
+        PdfReader reader = getPartialReader(obj);
+        if (reader != null) {
+            // another thread could read an object between the two calls
+            synchronized (reader) {
+                PdfObject obj2 = getPdfObject(obj);
+                releaseLastXrefPartial(obj);
+                return obj2;
+            }
+        }
         PdfObject obj2 = getPdfObject(obj);
         releaseLastXrefPartial(obj);
         return obj2;
     }
 
+    /**
+     * Gets the reader of an indirect reference if it was opened in partial mode.
+     * @param obj the object
+     * @return the reader or <CODE>null</CODE>
+     */
+    private static PdfReader getPartialReader(PdfObject obj) {
+        if (!(obj instanceof PRIndirectReference))
+            return null;
+        PdfReader reader = ((PRIndirectReference)obj).getReader();
+        return reader.partial ? reader : null;
+    }
+
 
     /**
      * Reads a <CODE>PdfObject</CODE> resolving an indirect reference
@@ -847,6 +977,14 @@ public class PdfReader implements PdfViewerPreferences {
      * @return a PdfObject
      */
     public static PdfObject getPdfObjectRelease(PdfObject obj, PdfObject parent) {
+        PdfReader reader = getPartialReader(obj);
+        if (reader != null) {
+            synchronized (reader) {
+                PdfObject obj2 = getPdfObject(obj, parent);
+                releaseLastXrefPartial(obj);
+                return obj2;
+            }
+        }
         PdfObject obj2 = getPdfObject(obj, parent);
         releaseLastXrefPartial(obj);
         return obj2;
@@ -886,9 +1024,14 @@ public class PdfReader implements PdfViewerPreferences {
      * @return a PdfObject
      */
     public PdfObject getPdfObjectRelease(int idx) {
-        PdfObject obj = getPdfObject(idx);
-        releaseLastXrefPartial();
-        return obj;
+        if (partial) {
+            synchronized (this) {
+                PdfObject obj = getPdfObject(idx);
+                releaseLastXrefPartial();
+                return obj;
+            }
+        }
+        return getPdfObject(idx);
     }
 
     /**
@@ -896,6 +1039,16 @@ public class PdfReader implements PdfViewerPreferences {
      * @return aPdfObject
      */
     public PdfObject getPdfObject(int idx) {
+        if (partial) {
+            // the object table and the tokeniser are shared by all the threads
+            synchronized (this) {
+                return getXrefObject(idx);
+            }
+        }
+        return getXrefObject(idx);
+    }
+
+    private PdfObject getXrefObject(int idx) {
         try {
             lastXrefPartial = -1;
             if (idx < 0 || idx >= xrefObj.size())
@@ -905,6 +1058,14 @@ public class PdfReader implements PdfViewerPreferences {
                 return obj;
             if (idx * 2 >= xref.length)
                 return null;
+            if (objectCache != null) {
+                obj = objectCache.remove(idx);
+                if (obj != null) {
+                    xrefObj.set(idx, obj);
+                    lastXrefPartial = idx;
+                    return obj;
+                }
+            }
             obj = readSingleObject(idx);
             lastXrefPartial = -1;
             if (obj != null)
@@ -927,9 +1088,13 @@ public class PdfReader implements PdfViewerPreferences {
      *
      */
     public void releaseLastXrefPartial() {
-        if (partial && lastXrefPartial != -1) {
-            xrefObj.set(lastXrefPartial, null);
-            lastXrefPartial = -1;
+        if (partial) {
+            synchronized (this) {
+                if (lastXrefPartial != -1) {
+                    releaseXrefPartialObject(lastXrefPartial);
+                    lastXrefPartial = -1;
+                }
+            }
         }
     }
 
@@ -946,18 +1111,133 @@ public class PdfReader implements PdfViewerPreferences {
 
         PRIndirectReference ref = (PRIndirectReference)obj;
         PdfReader reader = ref.getReader();
-        if (reader.partial && reader.lastXrefPartial != -1 && reader.lastXrefPartial == ref.getNumber()) {
-            reader.xrefObj.set(reader.lastXrefPartial, null);
+        if (reader.partial) {
+            synchronized (reader) {
+                if (reader.lastXrefPartial != -1 && reader.lastXrefPartial == ref.getNumber()) {
+                    reader.releaseXrefPartialObject(reader.lastXrefPartial);
+                }
+                reader.lastXrefPartial = -1;
+            }
         }
-        reader.lastXrefPartial = -1;
+        else
+            reader.lastXrefPartial = -1;
+    }
+
+    /**
+     * Drops the object from the xref table in partial mode, keeping it
+     * in the object cache if there is one.
+     * @param idx the object number
+     */
+    private void releaseXrefPartialObject(int idx) {
+        if (objectCache != null) {
+            PdfObject obj = (PdfObject)xrefObj.get(idx);
+            if (obj != null)
+                objectCache.put(idx, obj);
+        }
+        xrefObj.set(idx, null);
+    }
+
+    /**
+     * Forgets any cached copy of the object. Must be called whenever
+     * the xref entry is changed or removed in partial mode.
+     * @param idx the object number
+     */
+    private void uncachePartialObject(int idx) {
+        if (objectCache != null)
+            objectCache.remove(idx);
     }
 
     private void setXrefPartialObject(int idx, PdfObject obj) {
         if (!partial || idx < 0)
             return;
+        uncachePartialObject(idx);
         xrefObj.set(idx, obj);
     }
 
+    /**
+     * Sets the cache for the objects read in partial mode. Without a cache
+     * every released object is discarded and parsed again from the file the
+     * next time it is needed; with a cache the released objects are kept,
+     * up to the given limits, and the least recently released ones are
+     * discarded first. This is useful when the same resources, like fonts
+     * or graphic states, are shared by many pages.
+     * <p>
+     * The cached objects are the same instances that were returned before,
+     * so any change made to them is kept while they are in the cache.
+     * Has no effect if the document was not opened in partial mode.
+     * @param maxObjects the maximum number of objects to keep. A value of 0 or less
+     * disables the cache
+     * @param maxBytes the maximum estimated memory used by the cached objects,
+     * in bytes. A value of 0 or less means no limit
+     * @since 2.1.8
+     */
+    public void setPartialObjectCache(int maxObjects, long maxBytes) {
+        if (!partial)
+            return;
+        if (maxObjects <= 0)
+            objectCache = null;
+        else
+            objectCache = new ObjectCache(maxObjects, maxBytes);
+    }
+
+    /**
+     * Sets the maximum number of fonts kept by <CODE>getCMapAwareFont()</CODE>.
+     * The least recently used fonts are discarded first. The default is 64.
+     * @param size the maximum number of fonts. A value of 0 or less
+     * disables the cache
+     * @since 2.1.8
+     */
+    public void setFontCacheSize(int size) {
+        synchronized (this) {
+            fontCacheSize = size;
+            fontCache = null;
+        }
+    }
+
+    /**
+     * Gets the font used by the text extraction for a font dictionary of this
+     * document. The fonts are cached by their indirect reference, so each font
+     * is only parsed once and then shared by all the pages and threads that
+     * extract text from the document.
+     * @param refFont the indirect reference to the font dictionary
+     * @return the font
+     * @since 2.1.8
+     */
+    public CMapAwareDocumentFont getCMapAwareFont(PRIndirectReference refFont) {
+        Map cache;
+        synchronized (this) {
+            if (fontCacheSize <= 0 || refFont.getReader() != this)
+                return new CMapAwareDocumentFont(refFont);
+            if (fontCache == null) {
+                final int maxFonts = fontCacheSize;
+                fontCache = new LinkedHashMap(16, 0.75f, true) {
+                    private static final long serialVersionUID = 3442542345489467236L;
+
+                    protected boolean removeEldestEntry(Map.Entry eldest) {
+                        return size() > maxFonts;
+                    }
+                };
+            }
+            cache = fontCache;
+        }
+        Integer key = new Integer(refFont.getNumber());
+        CMapAwareDocumentFont font;
+        synchronized (cache) {
+            font = (CMapAwareDocumentFont)cache.get(key);
+        }
+        if (font != null)
+            return font;
+        // the font is parsed outside the lock, another thread may do the same
+        font = new CMapAwareDocumentFont(refFont);
+        synchronized (cache) {
+            CMapAwareDocumentFont other = (CMapAwareDocumentFont)cache.get(key);
+            if (other != null)
+                return other;
+            cache.put(key, font);
+        }
+        return font;
+    }
+
     /**
      * @param obj
      * @return an indirect reference
@@ -977,24 +1257,46 @@ public class PdfReader implements PdfViewerPreferences {
         xrefObj = new ArrayList(xref.length / 2);
         xrefObj.addAll(Collections.nCopies(xref.length / 2, null));
         readDecryptedDocObj();
-        if (objStmToOffset != null) {
-            int keys[] = objStmToOffset.getKeys();
-            for (int k = 0; k < keys.length; ++k) {
-                int n = keys[k];
-                objStmToOffset.put(n, xref[n * 2]);
-                xref[n * 2] = -1;
+    }
+
+    /**
+     * Reads an object again from the file, as it is in the document and not
+     * as it may have been changed in memory. It's only possible in partial
+     * mode.
+     * @param idx the object number
+     * @return the object or <CODE>null</CODE> if not in partial mode or if
+     * the object can't be read
+     * @throws IOException on error
+     * @since 2.1.8
+     */
+    PdfObject readOriginalObject(int idx) throws IOException {
+        if (!partial)
+            return null;
+        synchronized (this) {
+            if (xref == null || idx < 0 || idx * 2 >= xref.length)
+                return null;
+            Object current = xrefObj.get(idx);
+            try {
+                return readSingleObject(idx);
+            }
+            finally {
+                xrefObj.set(idx, current);
+                lastXrefPartial = -1;
             }
         }
     }
 
     protected PdfObject readSingleObject(int k) throws IOException {
         strings.clear();
+        // the object streams themselves are not visible
+        if (objStmToOffset != null && objStmToOffset.containsKey(k))
+            return null;
         int k2 = k * 2;
-        int pos = xref[k2];
+        long pos = xref[k2];
         if (pos < 0)
             return null;
         if (xref[k2 + 1] > 0)
-            pos = objStmToOffset.get(xref[k2 + 1]);
+            pos = xref[(int)xref[k2 + 1] * 2];
         if (pos == 0)
             return null;
         tokens.seek(pos);
@@ -1007,7 +1309,7 @@ public class PdfReader implements PdfViewerPreferences {
             tokens.throwError("Invalid generation number.");
         objGen = tokens.intValue();
         tokens.nextValidToken();
-        if (!tokens.getStringValue().equals("obj"))
+        if (!tokens.tokenValueEquals("obj"))
             tokens.throwError("Token 'obj' expected.");
         PdfObject obj;
         try {
@@ -1024,7 +1326,7 @@ public class PdfReader implements PdfViewerPreferences {
             obj = null;
         }
         if (xref[k2 + 1] > 0) {
-            obj = readOneObjStm((PRStream)obj, xref[k2]);
+            obj = readOneObjStm((PRStream)obj, (int)xref[k2]);
         }
         xrefObj.set(k, obj);
         return obj;
@@ -1083,7 +1385,7 @@ public class PdfReader implements PdfViewerPreferences {
         xrefObj = new ArrayList(xref.length / 2);
         xrefObj.addAll(Collections.nCopies(xref.length / 2, null));
         for (int k = 2; k < xref.length; k += 2) {
-            int pos = xref[k];
+            long pos = xref[k];
             if (pos <= 0 || xref[k + 1] > 0)
                 continue;
             tokens.seek(pos);
@@ -1096,7 +1398,7 @@ public class PdfReader implements PdfViewerPreferences {
                 tokens.throwError("Invalid generation number.");
             objGen = tokens.intValue();
             tokens.nextValidToken();
-            if (!tokens.getStringValue().equals("obj"))
+            if (!tokens.tokenValueEquals("obj"))
                 tokens.throwError("Token 'obj' expected.");
             PdfObject obj;
             try {
@@ -1115,21 +1417,112 @@ public class PdfReader implements PdfViewerPreferences {
         }
         readDecryptedDocObj();
         if (objStmMark != null) {
-            for (Iterator i = objStmMark.entrySet().iterator(); i.hasNext();) {
-                Map.Entry entry = (Map.Entry)i.next();
-                int n = ((Integer)entry.getKey()).intValue();
-                IntHashtable h = (IntHashtable)entry.getValue();
-                readObjStm((PRStream)xrefObj.get(n), h);
-                xrefObj.set(n, null);
+            if (threads > 1 && objStmMark.size() > 1)
+                readObjStmsParallel(threads);
+            else {
+                for (Iterator i = objStmMark.entrySet().iterator(); i.hasNext();) {
+                    Map.Entry entry = (Map.Entry)i.next();
+                    int n = ((Integer)entry.getKey()).intValue();
+                    IntHashtable h = (IntHashtable)entry.getValue();
+                    readObjStm((PRStream)xrefObj.get(n), h);
+                    xrefObj.set(n, null);
+                }
             }
             objStmMark = null;
         }
         xref = null;
     }
 
+    /**
+     * Reads the object streams decoding them in a pool of threads. Each thread
+     * decodes from its own view of the file; the objects are parsed in the
+     * calling thread in the same order as <CODE>readDocObj()</CODE> does.
+     * @param threads the number of threads
+     * @throws IOException on error
+     */
+    private void readObjStmsParallel(int threads) throws IOException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "iText object streams");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // tokens will be replaced while parsing, keep the file to clone
+        final RandomAccessFileOrArray file = tokens.getFile();
+        // each worker opens its own view of the file once
+        final ArrayList views = new ArrayList();
+        final ThreadLocal view = new ThreadLocal() {
+            protected Object initialValue() {
+                RandomAccessFileOrArray rf = new RandomAccessFileOrArray(file);
+                synchronized (views) {
+                    views.add(rf);
+                }
+                return rf;
+            }
+        };
+        try {
+            // the decoded streams waiting to be parsed are limited to keep the memory bounded
+            int maxPending = threads * 4;
+            LinkedList pending = new LinkedList();
+            Iterator i = objStmMark.entrySet().iterator();
+            while (i.hasNext() || !pending.isEmpty()) {
+                while (i.hasNext() && pending.size() < maxPending) {
+                    Map.Entry entry = (Map.Entry)i.next();
+                    int n = ((Integer)entry.getKey()).intValue();
+                    final PRStream stream = (PRStream)xrefObj.get(n);
+                    Future decoded = pool.submit(new Callable() {
+                        public Object call() throws Exception {
+                            RandomAccessFileOrArray rf = (RandomAccessFileOrArray)view.get();
+                            rf.reOpen();
+                            return getStreamBytes(stream, rf);
+                        }
+                    });
+                    pending.add(new Object[]{entry, decoded});
+                }
+                Object p[] = (Object[])pending.removeFirst();
+                Map.Entry entry = (Map.Entry)p[0];
+                int n = ((Integer)entry.getKey()).intValue();
+                byte b[];
+                try {
+                    b = (byte[])((Future)p[1]).get();
+                }
+                catch (InterruptedException e) {
+                    throw new InterruptedIOException(e.getMessage());
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException)cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    throw new ExceptionConverter(new Exception(cause));
+                }
+                readObjStm((PRStream)xrefObj.get(n), b, (IntHashtable)entry.getValue());
+                xrefObj.set(n, null);
+            }
+        }
+        finally {
+            pool.shutdownNow();
+            // the views can only be closed when no worker is reading them
+            boolean terminated = false;
+            try {
+                terminated = pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (terminated) {
+                for (int k = 0; k < views.size(); ++k) {
+                    try{((RandomAccessFileOrArray)views.get(k)).close();}catch(Exception e){}
+                }
+            }
+        }
+    }
+
     private void checkPRStreamLength(PRStream stream) throws IOException {
-        int fileLength = tokens.length();
-        int start = stream.getOffset();
+        long fileLength = tokens.length();
+        long start = stream.getOffset();
         boolean calc = false;
         int streamLength = 0;
         PdfObject obj = getPdfObjectRelease(stream.get(PdfName.LENGTH));
@@ -1153,11 +1546,11 @@ public class PdfReader implements PdfViewerPreferences {
             byte tline[] = new byte[16];
             tokens.seek(start);
             while (true) {
-                int pos = tokens.getFilePointer();
+                long pos = tokens.getFilePointer();
                 if (!tokens.readLineSegment(tline))
                     break;
                 if (equalsn(tline, endstream)) {
-                    streamLength = pos - start;
+                    streamLength = (int)(pos - start);
                     break;
                 }
                 if (equalsn(tline, endobj)) {
@@ -1166,7 +1559,7 @@ public class PdfReader implements PdfViewerPreferences {
                     int index = s.indexOf("endstream");
                     if (index >= 0)
                         pos = pos - 16 + index;
-                    streamLength = pos - start;
+                    streamLength = (int)(pos - start);
                     break;
                 }
             }
@@ -1175,9 +1568,12 @@ public class PdfReader implements PdfViewerPreferences {
     }
 
     protected void readObjStm(PRStream stream, IntHashtable map) throws IOException {
+        readObjStm(stream, getStreamBytes(stream, tokens.getFile()), map);
+    }
+
+    private void readObjStm(PRStream stream, byte b[], IntHashtable map) throws IOException {
         int first = stream.getAsNumber(PdfName.FIRST).intValue();
         int n = stream.getAsNumber(PdfName.N).intValue();
-        byte b[] = getStreamBytes(stream, tokens.getFile());
         PRTokeniser saveTokens = tokens;
         tokens = new PRTokeniser(b);
         try {
@@ -1232,8 +1628,10 @@ public class PdfReader implements PdfViewerPreferences {
             PdfReader reader = ref.getReader();
             int n = ref.getNumber();
             reader.xrefObj.set(n, null);
-            if (reader.partial)
+            if (reader.partial) {
                 reader.xref[n * 2] = -1;
+                reader.uncachePartialObject(n);
+            }
         }
         return ret;
     }
@@ -1242,10 +1640,10 @@ public class PdfReader implements PdfViewerPreferences {
         if (size == 0)
             return;
         if (xref == null)
-            xref = new int[size];
+            xref = new long[size];
         else {
             if (xref.length < size) {
-                int xref2[] = new int[size];
+                long xref2[] = new long[size];
                 System.arraycopy(xref, 0, xref2, 0, xref.length);
                 xref = xref2;
             }
@@ -1262,7 +1660,7 @@ public class PdfReader implements PdfViewerPreferences {
         tokens.nextToken();
         if (tokens.getTokenType() != PRTokeniser.TK_NUMBER)
             throw new InvalidPdfException("startxref is not followed by a number.");
-        int startxref = tokens.intValue();
+        long startxref = tokens.longValue();
         lastXref = startxref;
         eofPos = tokens.getFilePointer();
         try {
@@ -1280,7 +1678,7 @@ public class PdfReader implements PdfViewerPreferences {
             PdfNumber prev = (PdfNumber)trailer2.get(PdfName.PREV);
             if (prev == null)
                 break;
-            tokens.seek(prev.intValue());
+            tokens.seek(prev.longValue());
             trailer2 = readXrefSection();
         }
     }
@@ -1291,11 +1689,11 @@ public class PdfReader implements PdfViewerPreferences {
             tokens.throwError("xref subsection not found");
         int start = 0;
         int end = 0;
-        int pos = 0;
+        long pos = 0;
         int gen = 0;
         while (true) {
             tokens.nextValidToken();
-            if (tokens.getStringValue().equals("trailer"))
+            if (tokens.tokenValueEquals("trailer"))
                 break;
             if (tokens.getTokenType() != PRTokeniser.TK_NUMBER)
                 tokens.throwError("Object number of the first object in this xref subsection not found");
@@ -1305,9 +1703,9 @@ public class PdfReader implements PdfViewerPreferences {
                 tokens.throwError("Number of entries in this xref subsection not found");
             end = tokens.intValue() + start;
             if (start == 1) { // fix incorrect start number
-                int back = tokens.getFilePointer();
+                long back = tokens.getFilePointer();
                 tokens.nextValidToken();
-                pos = tokens.intValue();
+                pos = tokens.longValue();
                 tokens.nextValidToken();
                 gen = tokens.intValue();
                 if (pos == 0 && gen == PdfWriter.GENERATION_MAX) {
@@ -1319,19 +1717,19 @@ public class PdfReader implements PdfViewerPreferences {
             ensureXrefSize(end * 2);
             for (int k = start; k < end; ++k) {
                 tokens.nextValidToken();
-                pos = tokens.intValue();
+                pos = tokens.longValue();
                 tokens.nextValidToken();
                 gen = tokens.intValue();
                 tokens.nextValidToken();
                 int p = k * 2;
-                if (tokens.getStringValue().equals("n")) {
+                if (tokens.tokenValueEquals("n")) {
                     if (xref[p] == 0 && xref[p + 1] == 0) {
 //                        if (pos == 0)
 //                            tokens.throwError("File position 0 cross-reference entry in this xref subsection");
                         xref[p] = pos;
                     }
                 }
-                else if (tokens.getStringValue().equals("f")) {
+                else if (tokens.tokenValueEquals("f")) {
                     if (xref[p] == 0 && xref[p + 1] == 0)
                         xref[p] = -1;
                 }
@@ -1344,7 +1742,7 @@ public class PdfReader implements PdfViewerPreferences {
         ensureXrefSize(xrefSize.intValue() * 2);
         PdfObject xrs = trailer.get(PdfName.XREFSTM);
         if (xrs != null && xrs.isNumber()) {
-            int loc = ((PdfNumber)xrs).intValue();
+            long loc = ((PdfNumber)xrs).longValue();
             try {
                 readXRefStream(loc);
                 newXrefType = true;
@@ -1358,7 +1756,7 @@ public class PdfReader implements PdfViewerPreferences {
         return trailer;
     }
 
-    protected boolean readXRefStream(int ptr) throws IOException {
+    protected boolean readXRefStream(long ptr) throws IOException {
         tokens.seek(ptr);
         int thisStream = 0;
         if (!tokens.nextToken())
@@ -1368,7 +1766,7 @@ public class PdfReader implements PdfViewerPreferences {
         thisStream = tokens.intValue();
         if (!tokens.nextToken() || tokens.getTokenType() != PRTokeniser.TK_NUMBER)
             return false;
-        if (!tokens.nextToken() || !tokens.getStringValue().equals("obj"))
+        if (!tokens.nextToken() || !tokens.tokenValueEquals("obj"))
             return false;
         PdfObject object = readPRObject();
         PRStream stm = null;
@@ -1394,10 +1792,10 @@ public class PdfReader implements PdfViewerPreferences {
         else
             index = (PdfArray)obj;
         PdfArray w = (PdfArray)stm.get(PdfName.W);
-        int prev = -1;
+        long prev = -1;
         obj = stm.get(PdfName.PREV);
         if (obj != null)
-            prev = ((PdfNumber)obj).intValue();
+            prev = ((PdfNumber)obj).longValue();
         // Each xref pair is a position
         // type 0 -> -1, 0
         // type 1 -> offset, 0
@@ -1423,7 +1821,7 @@ public class PdfReader implements PdfViewerPreferences {
                     for (int k = 0; k < wc[0]; ++k)
                         type = (type << 8) + (b[bptr++] & 0xff);
                 }
-                int field2 = 0;
+                long field2 = 0;
                 for (int k = 0; k < wc[1]; ++k)
                     field2 = (field2 << 8) + (b[bptr++] & 0xff);
                 int field3 = 0;
@@ -1442,10 +1840,10 @@ public class PdfReader implements PdfViewerPreferences {
                             xref[base] = field3;
                             xref[base + 1] = field2;
                             if (partial) {
-                                objStmToOffset.put(field2, 0);
+                                objStmToOffset.put((int)field2, 0);
                             }
                             else {
-                                Integer on = new Integer(field2);
+                                Integer on = new Integer((int)field2);
                                 IntHashtable seq = (IntHashtable)objStmMark.get(on);
                                 if (seq == null) {
                                     seq = new IntHashtable();
@@ -1473,60 +1871,276 @@ public class PdfReader implements PdfViewerPreferences {
     protected void rebuildXref() throws IOException {
         hybridXref = false;
         newXrefType = false;
-        tokens.seek(0);
-        int xr[][] = new int[1024][];
-        int top = 0;
         trailer = null;
-        byte line[] = new byte[64];
-        for (;;) {
-            int pos = tokens.getFilePointer();
-            if (!tokens.readLineSegment(line))
-                break;
-            if (line[0] == 't') {
-                if (!PdfEncodings.convertToString(line, null).startsWith("trailer"))
-                    continue;
-                tokens.seek(pos);
-                tokens.nextToken();
-                pos = tokens.getFilePointer();
-                try {
-                    PdfDictionary dic = (PdfDictionary)readPRObject();
-                    if (dic.get(PdfName.ROOT) != null)
-                        trailer = dic;
-                    else
-                        tokens.seek(pos);
-                }
-                catch (Exception e) {
-                    tokens.seek(pos);
-                }
-            }
-            else if (line[0] >= '0' && line[0] <= '9') {
-                int obj[] = PRTokeniser.checkObjectStart(line);
-                if (obj == null)
-                    continue;
-                int num = obj[0];
-                int gen = obj[1];
+        objStmMark = partial ? null : new HashMap();
+        objStmToOffset = partial ? new IntHashtable() : null;
+        XrefScanner scanners[] = scanFile();
+        // the objects found, keeping the highest generation and then the last one
+        long xr[] = new long[1024];
+        int xrGen[] = new int[1024];
+        int top = 0;
+        for (int s = 0; s < scanners.length; ++s) {
+            XrefScanner sc = scanners[s];
+            for (int k = 0; k < sc.objCount; ++k) {
+                int num = sc.objNum[k];
+                int gen = sc.objGen[k];
                 if (num >= xr.length) {
                     int newLength = num * 2;
-                    int xr2[][] = new int[newLength][];
+                    long xr2[] = new long[newLength];
                     System.arraycopy(xr, 0, xr2, 0, top);
                     xr = xr2;
+                    int xrGen2[] = new int[newLength];
+                    System.arraycopy(xrGen, 0, xrGen2, 0, top);
+                    xrGen = xrGen2;
                 }
                 if (num >= top)
                     top = num + 1;
-                if (xr[num] == null || gen >= xr[num][1]) {
-                    obj[0] = pos;
-                    xr[num] = obj;
+                if (xr[num] == 0 || gen >= xrGen[num]) {
+                    xr[num] = sc.objPos[k];
+                    xrGen[num] = gen;
+                }
+            }
+        }
+        // the last trailer with a catalog wins
+        for (int s = scanners.length - 1; s >= 0 && trailer == null; --s) {
+            XrefScanner sc = scanners[s];
+            for (int k = sc.trailerCount - 1; k >= 0; --k) {
+                try {
+                    tokens.seek(sc.trailers[k]);
+                    tokens.nextToken();
+                    PdfDictionary dic = (PdfDictionary)readPRObject();
+                    if (dic.get(PdfName.ROOT) != null) {
+                        trailer = dic;
+                        break;
+                    }
+                }
+                catch (Exception e) {
+                    // not a trailer
+                }
+            }
+        }
+        xref = new long[top * 2];
+        for (int k = 0; k < top; ++k)
+            xref[k * 2] = xr[k];
+        // the sections are in file order so the positions are already sorted
+        int total = 0;
+        for (int s = 0; s < scanners.length; ++s)
+            total += scanners[s].objCount;
+        long objStarts[] = new long[total];
+        total = 0;
+        for (int s = 0; s < scanners.length; ++s) {
+            System.arraycopy(scanners[s].objPos, 0, objStarts, total, scanners[s].objCount);
+            total += scanners[s].objCount;
+        }
+        // without a trailer keyword the document may use cross-reference streams
+        for (int s = scanners.length - 1; s >= 0 && trailer == null; --s) {
+            XrefScanner sc = scanners[s];
+            for (int k = sc.xrefCount - 1; k >= 0; --k) {
+                PdfObject obj = readRecoveredObject(objStarts, sc.xrefs[k]);
+                if (obj != null && obj.isStream() && PdfName.XREF.equals(((PdfDictionary)obj).get(PdfName.TYPE))
+                    && ((PdfDictionary)obj).get(PdfName.ROOT) != null) {
+                    trailer = new PdfDictionary();
+                    trailer.putAll((PdfDictionary)obj);
+                    trailer.remove(PdfName.TYPE);
+                    trailer.remove(PdfName.LENGTH);
+                    trailer.remove(PdfName.FILTER);
+                    trailer.remove(PdfName.DECODEPARMS);
+                    trailer.remove(PdfName.W);
+                    trailer.remove(PdfName.INDEX);
+                    trailer.remove(PdfName.PREV);
+                    break;
                 }
             }
         }
         if (trailer == null)
             throw new InvalidPdfException("trailer not found.");
-        xref = new int[top * 2];
-        for (int k = 0; k < top; ++k) {
-            int obj[] = xr[k];
-            if (obj != null)
-                xref[k * 2] = obj[0];
+        // the object streams can't be read before the decryption is set up
+        if (trailer.get(PdfName.ENCRYPT) == null)
+            recoverObjStms(scanners, objStarts, xrGen);
+    }
+
+    /**
+     * Scans the file for the objects and the trailers, splitting it in sections
+     * read by several threads if the reader was created with more than one.
+     * @return the results of the sections, in file order
+     * @throws IOException on error
+     */
+    private XrefScanner[] scanFile() throws IOException {
+        RandomAccessFileOrArray file = tokens.getFile();
+        long length = file.length();
+        // each section should be at least 8 MB
+        long sections = Math.min(threads, length / (1 << 23) + 1);
+        if (sections < 1)
+            sections = 1;
+        XrefScanner scanners[] = new XrefScanner[(int)sections];
+        long size = length / sections + 1;
+        for (int k = 0; k < scanners.length; ++k)
+            scanners[k] = new XrefScanner(new RandomAccessFileOrArray(file), k * size, Math.min(length, (k + 1) * size));
+        if (scanners.length == 1) {
+            scanners[0].call();
+            return scanners;
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "iText rebuild");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            Future results[] = new Future[scanners.length];
+            for (int k = 0; k < scanners.length; ++k)
+                results[k] = pool.submit(scanners[k]);
+            for (int k = 0; k < scanners.length; ++k) {
+                try {
+                    results[k].get();
+                }
+                catch (InterruptedException e) {
+                    throw new InterruptedIOException(e.getMessage());
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException)cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    throw new ExceptionConverter(new Exception(cause));
+                }
+            }
         }
+        finally {
+            pool.shutdownNow();
+        }
+        return scanners;
+    }
+
+    /**
+     * Finds the object that contains a position, usually of a name in its
+     * dictionary, and reads it if it's the current version of the object.
+     * @param objStarts the sorted positions of all the objects found
+     * @param pos the position inside the object
+     * @return the object or <CODE>null</CODE> if it's not found or can't be read
+     */
+    private PdfObject readRecoveredObject(long objStarts[], long pos) {
+        int idx = Arrays.binarySearch(objStarts, pos);
+        if (idx < 0)
+            idx = -idx - 2;
+        if (idx < 0)
+            return null;
+        long objPos = objStarts[idx];
+        try {
+            tokens.seek(objPos);
+            tokens.nextValidToken();
+            objNum = tokens.intValue();
+            tokens.nextValidToken();
+            objGen = tokens.intValue();
+            if (objNum * 2 >= xref.length || xref[objNum * 2] != objPos)
+                return null;
+            tokens.nextValidToken();
+            PdfObject obj = readPRObject();
+            if (obj.isStream()) {
+                PRStream stream = (PRStream)obj;
+                // the other objects aren't available yet
+                if (stream.get(PdfName.LENGTH) != null && stream.get(PdfName.LENGTH).isIndirect())
+                    stream.remove(PdfName.LENGTH);
+                checkPRStreamLength(stream);
+            }
+            return obj;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds to the xref the objects stored in the object streams found by
+     * <CODE>rebuildXref()</CODE>. An object found both in an object stream
+     * and as a plain object is taken from the one that comes last in the file,
+     * unless the plain object has a higher generation.
+     */
+    private void recoverObjStms(XrefScanner scanners[], long objStarts[], int xrGen[]) {
+        // the file position where each object was found
+        long found[] = new long[xref.length / 2];
+        for (int k = 0; k < found.length; ++k)
+            found[k] = xref[k * 2];
+        IntHashtable done = new IntHashtable();
+        for (int s = 0; s < scanners.length; ++s) {
+            XrefScanner sc = scanners[s];
+            for (int m = 0; m < sc.objStmCount; ++m) {
+                PdfObject obj = readRecoveredObject(objStarts, sc.objStms[m]);
+                if (obj == null || !obj.isStream() || done.containsKey(objNum))
+                    continue;
+                PRStream stream = (PRStream)obj;
+                if (!PdfName.OBJSTM.equals(stream.get(PdfName.TYPE)))
+                    continue;
+                int stmNum = objNum;
+                long stmPos = xref[stmNum * 2];
+                done.put(stmNum, 1);
+                int objNumber[];
+                try {
+                    objNumber = readObjStmNumbers(stream);
+                }
+                catch (Exception e) {
+                    continue;
+                }
+                for (int k = 0; k < objNumber.length; ++k) {
+                    int num = objNumber[k];
+                    if (num <= 0 || num == stmNum)
+                        continue;
+                    if (num * 2 >= xref.length) {
+                        long xref2[] = new long[num * 4];
+                        System.arraycopy(xref, 0, xref2, 0, xref.length);
+                        xref = xref2;
+                        long found2[] = new long[num * 2];
+                        System.arraycopy(found, 0, found2, 0, found.length);
+                        found = found2;
+                    }
+                    if (found[num] != 0 && (found[num] > stmPos || (xref[num * 2 + 1] == 0 && num < xrGen.length && xrGen[num] > 0)))
+                        continue;
+                    found[num] = stmPos;
+                    xref[num * 2] = k;
+                    xref[num * 2 + 1] = stmNum;
+                }
+            }
+        }
+        // mark the object streams that are still in use
+        for (int k = 0; k < found.length; ++k) {
+            if (xref[k * 2 + 1] <= 0)
+                continue;
+            int stmNum = (int)xref[k * 2 + 1];
+            if (partial) {
+                objStmToOffset.put(stmNum, 0);
+            }
+            else {
+                Integer on = new Integer(stmNum);
+                IntHashtable seq = (IntHashtable)objStmMark.get(on);
+                if (seq == null) {
+                    seq = new IntHashtable();
+                    objStmMark.put(on, seq);
+                }
+                seq.put((int)xref[k * 2], 1);
+            }
+        }
+    }
+
+    /**
+     * Reads the object numbers stored in an object stream.
+     * @param stream the object stream
+     * @return the object numbers, in the stream order
+     * @throws IOException on error
+     */
+    private int[] readObjStmNumbers(PRStream stream) throws IOException {
+        int n = stream.getAsNumber(PdfName.N).intValue();
+        PRTokeniser tk = new PRTokeniser(getStreamBytes(stream, tokens.getFile()));
+        int objNumber[] = new int[n];
+        for (int k = 0; k < n; ++k) {
+            if (!tk.nextToken() || tk.getTokenType() != PRTokeniser.TK_NUMBER)
+                throw new InvalidPdfException("Error reading ObjStm");
+            objNumber[k] = tk.intValue();
+            if (!tk.nextToken() || tk.getTokenType() != PRTokeniser.TK_NUMBER)
+                throw new InvalidPdfException("Error reading ObjStm");
+        }
+        return objNumber;
     }
 
     protected PdfDictionary readDictionary() throws IOException {
@@ -1537,7 +2151,7 @@ public class PdfReader implements PdfViewerPreferences {
                 break;
             if (tokens.getTokenType() != PRTokeniser.TK_NAME)
                 tokens.throwError("Dictionary key is not a name.");
-            PdfName name = new PdfName(tokens.getStringValue(), false);
+            PdfName name = tokens.getPdfName();
             PdfObject obj = readPRObject();
             int type = obj.type();
             if (-type == PRTokeniser.TK_END_DIC)
@@ -1576,14 +2190,14 @@ public class PdfReader implements PdfViewerPreferences {
                 ++readDepth;
                 PdfDictionary dic = readDictionary();
                 --readDepth;
-                int pos = tokens.getFilePointer();
+                long pos = tokens.getFilePointer();
                 // be careful in the trailer. May not be a "next" token.
                 boolean hasNext;
                 do {
                     hasNext = tokens.nextToken();
                 } while (hasNext && tokens.getTokenType() == PRTokeniser.TK_COMMENT);
 
-                if (hasNext && tokens.getStringValue().equals("stream")) {
+                if (hasNext && tokens.tokenValueEquals("stream")) {
                     //skip whitespaces
                     int ch;
                     do {
@@ -1612,9 +2226,9 @@ public class PdfReader implements PdfViewerPreferences {
                 return arr;
             }
             case PRTokeniser.TK_NUMBER:
-                return new PdfNumber(tokens.getStringValue());
+                return new PdfNumber(tokens.copyTokenBytes());
             case PRTokeniser.TK_STRING:
-                PdfString str = new PdfString(tokens.getStringValue(), null).setHexWriting(tokens.isHexString());
+                PdfString str = new PdfString(tokens.copyTokenBytes(), tokens.isHexString());
                 // crypto handling
                 str.setObjNum(objNum, objGen);
                 if (strings != null)
@@ -1622,12 +2236,12 @@ public class PdfReader implements PdfViewerPreferences {
 
                 return str;
             case PRTokeniser.TK_NAME: {
-                PdfName cachedName = (PdfName)PdfName.staticNames.get( tokens.getStringValue() );
-                if (readDepth > 0 && cachedName != null) {
-                    return cachedName;
+                PdfName sharedName = tokens.getPdfName();
+                if (readDepth > 0) {
+                    return sharedName;
                 } else {
-                    // an indirect name (how odd...), or a non-standard one
-                    return new PdfName(tokens.getStringValue(), false);
+                    // an indirect name (how odd...) gets its own object
+                    return new PdfName(sharedName.getBytes());
                 }
             }
             case PRTokeniser.TK_REF:
@@ -1635,20 +2249,19 @@ public class PdfReader implements PdfViewerPreferences {
                 PRIndirectReference ref = new PRIndirectReference(this, num, tokens.getGeneration());
                 return ref;
             default:
-                String sv = tokens.getStringValue();
-                if ("null".equals(sv)) {
+                if (tokens.tokenValueEquals("null")) {
                     if (readDepth == 0) {
                         return new PdfNull();
                     } //else
                     return PdfNull.PDFNULL;
                 }
-                else if ("true".equals(sv)) {
+                else if (tokens.tokenValueEquals("true")) {
                     if (readDepth == 0) {
                         return new PdfBoolean( true );
                     } //else
                     return PdfBoolean.PDFTRUE;
                 }
-                else if ("false".equals(sv)) {
+                else if (tokens.tokenValueEquals("false")) {
                     if (readDepth == 0) {
                         return new PdfBoolean( false );
                     } //else
@@ -1682,7 +2295,7 @@ public class PdfReader implements PdfViewerPreferences {
         if (obj == null || !obj.isNumber())
             return in;
         int predictor = ((PdfNumber)obj).intValue();
-        if (predictor < 10)
+        if (predictor < 10 && predictor != 2)
             return in;
         int width = 1;
         obj = getPdfObject(dic.get(PdfName.COLUMNS));
@@ -1696,6 +2309,22 @@ public class PdfReader implements PdfViewerPreferences {
         obj = getPdfObject(dic.get(PdfName.BITSPERCOMPONENT));
         if (obj != null && obj.isNumber())
             bpc = ((PdfNumber)obj).intValue();
+        if (predictor == 2) {
+            // TIFF predictor, only supported for 8 bits per component
+            if (bpc != 8 || width * colors <= 0)
+                return in;
+            int bytesPerPixel = colors;
+            int bytesPerRow = colors * width;
+            int rows = in.length / bytesPerRow;
+            byte out[] = new byte[rows * bytesPerRow];
+            System.arraycopy(in, 0, out, 0, out.length);
+            for (int r = 0; r < out.length; r += bytesPerRow) {
+                for (int i = r + bytesPerPixel; i < r + bytesPerRow; i++) {
+                    out[i] += out[i - bytesPerPixel];
+                }
+            }
+            return out;
+        }
         DataInputStream dataStream = new DataInputStream(new ByteArrayInputStream(in));
         ByteArrayOutputStream fout = new ByteArrayOutputStream(in.length);
         int bytesPerPixel = colors * bpc / 8;
@@ -1933,9 +2562,14 @@ public class PdfReader implements PdfViewerPreferences {
      * @return a Dictionary object
      */
     public PdfDictionary getPageNRelease(int pageNum) {
-        PdfDictionary dic = getPageN(pageNum);
-        pageRefs.releasePage(pageNum);
-        return dic;
+        if (partial) {
+            synchronized (this) {
+                PdfDictionary dic = getPageN(pageNum);
+                pageRefs.releasePage(pageNum);
+                return dic;
+            }
+        }
+        return getPageN(pageNum);
     }
 
     /**
@@ -2076,25 +2710,9 @@ public class PdfReader implements PdfViewerPreferences {
      * @return the stream content
      */
     public static byte[] getStreamBytes(PRStream stream, RandomAccessFileOrArray file) throws IOException {
-        PdfObject filter = getPdfObjectRelease(stream.get(PdfName.FILTER));
         byte[] b = getStreamBytesRaw(stream, file);
-        ArrayList filters = new ArrayList();
-        if (filter != null) {
-            if (filter.isName())
-                filters.add(filter);
-            else if (filter.isArray())
-                filters = ((PdfArray)filter).getArrayList();
-        }
-        ArrayList dp = new ArrayList();
-        PdfObject dpo = getPdfObjectRelease(stream.get(PdfName.DECODEPARMS));
-        if (dpo == null || (!dpo.isDictionary() && !dpo.isArray()))
-            dpo = getPdfObjectRelease(stream.get(PdfName.DP));
-        if (dpo != null) {
-            if (dpo.isDictionary())
-                dp.add(dpo);
-            else if (dpo.isArray())
-                dp = ((PdfArray)dpo).getArrayList();
-        }
+        ArrayList filters = getFilters(stream);
+        ArrayList dp = getDecodeParms(stream);
         String name;
         for (int j = 0; j < filters.size(); ++j) {
             name = ((PdfName)getPdfObjectRelease((PdfObject)filters.get(j))).toString();
@@ -2126,6 +2744,174 @@ public class PdfReader implements PdfViewerPreferences {
         return b;
     }
 
+    /**
+     * Gets the filters of a stream.
+     * @param stream the stream
+     * @return a list with the filter names, possibly indirect
+     */
+    private static ArrayList getFilters(PRStream stream) {
+        PdfObject filter = getPdfObjectRelease(stream.get(PdfName.FILTER));
+        ArrayList filters = new ArrayList();
+        if (filter != null) {
+            if (filter.isName())
+                filters.add(filter);
+            else if (filter.isArray())
+                filters = ((PdfArray)filter).getArrayList();
+        }
+        return filters;
+    }
+
+    /**
+     * Gets the decode parameters of a stream.
+     * @param stream the stream
+     * @return a list with the parameters of each filter
+     */
+    private static ArrayList getDecodeParms(PRStream stream) {
+        ArrayList dp = new ArrayList();
+        PdfObject dpo = getPdfObjectRelease(stream.get(PdfName.DECODEPARMS));
+        if (dpo == null || (!dpo.isDictionary() && !dpo.isArray()))
+            dpo = getPdfObjectRelease(stream.get(PdfName.DP));
+        if (dpo != null) {
+            if (dpo.isDictionary())
+                dp.add(dpo);
+            else if (dpo.isArray())
+                dp = ((PdfArray)dpo).getArrayList();
+        }
+        return dp;
+    }
+
+    /**
+     * Checks if the stream has the /Crypt filter, in which case it's not
+     * decrypted with the document key.
+     * @param stream the stream
+     * @return <CODE>true</CODE> if the stream has the /Crypt filter
+     */
+    private static boolean hasCryptFilter(PRStream stream) {
+        ArrayList filters = getFilters(stream);
+        for (int k = 0; k < filters.size(); ++k) {
+            PdfObject obj = getPdfObjectRelease((PdfObject)filters.get(k));
+            if (obj != null && obj.toString().equals("/Crypt"))
+                return true;
+        }
+        return false;
+    }
+
+    /** Gets the content from a stream applying the required filters, as an
+     * <CODE>InputStream</CODE>. Unlike <CODE>getStreamBytes()</CODE>, the
+     * filters are applied as the data is read and neither the encoded nor the
+     * decoded data is kept in memory, so this is the way to read very large
+     * streams such as embedded files or images.
+     * <p>
+     * The stream must be closed after use to release the file.
+     * @param stream the stream
+     * @throws IOException on error
+     * @return the decoded stream content
+     * @since 2.1.8
+     */
+    public static InputStream getStreamInputStream(PRStream stream) throws IOException {
+        InputStream in = getStreamInputStreamRaw(stream);
+        try {
+            ArrayList filters = getFilters(stream);
+            ArrayList dp = getDecodeParms(stream);
+            String name;
+            for (int j = 0; j < filters.size(); ++j) {
+                name = ((PdfName)getPdfObjectRelease((PdfObject)filters.get(j))).toString();
+                if (name.equals("/FlateDecode") || name.equals("/Fl")) {
+                    in = new FlateDecodeInputStream(in);
+                    if (j < dp.size())
+                        in = decodePredictor(in, (PdfObject)dp.get(j));
+                }
+                else if (name.equals("/ASCIIHexDecode") || name.equals("/AHx"))
+                    in = new ASCIIHexInputStream(in);
+                else if (name.equals("/ASCII85Decode") || name.equals("/A85"))
+                    in = new ASCII85InputStream(in);
+                else if (name.equals("/LZWDecode")) {
+                    in = new LZWInputStream(in);
+                    if (j < dp.size())
+                        in = decodePredictor(in, (PdfObject)dp.get(j));
+                }
+                else if (name.equals("/Crypt")) {
+                }
+                else
+                    throw new UnsupportedPdfException("The filter " + name + " is not supported.");
+            }
+            return in;
+        }
+        catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        catch (RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /** Gets the content from a stream as it is without applying any filter,
+     * as an <CODE>InputStream</CODE>. The content is decrypted if needed.
+     * <p>
+     * The stream must be closed after use to release the file.
+     * @param stream the stream
+     * @throws IOException on error
+     * @return the stream content
+     * @since 2.1.8
+     */
+    public static InputStream getStreamInputStreamRaw(PRStream stream) throws IOException {
+        if (stream.getOffset() < 0) {
+            byte b[] = stream.getBytes();
+            return new ByteArrayInputStream(b == null ? new byte[0] : b);
+        }
+        PdfReader reader = stream.getReader();
+        RandomAccessFileOrArray rf = reader.getSafeFile();
+        rf.reOpen();
+        InputStream in = new FileSectionInputStream(rf, stream.getOffset(), stream.getLength());
+        PdfEncryption decrypt = reader.getDecrypt();
+        if (decrypt != null && !hasCryptFilter(stream)) {
+            StandardDecryption dec;
+            synchronized (decrypt) {
+                decrypt.setHashKey(stream.getObjNum(), stream.getObjGen());
+                dec = decrypt.getDecryptor();
+            }
+            in = new InputStreamDecryption(in, dec);
+        }
+        return new BufferedInputStream(in);
+    }
+
+    /**
+     * Reverses the predictor of a decoded stream as the data is read.
+     * @param in the decoded data
+     * @param dicPar the decode parameters
+     * @return the data without the predictor
+     * @since 2.1.8
+     */
+    private static InputStream decodePredictor(InputStream in, PdfObject dicPar) {
+        if (dicPar == null || !dicPar.isDictionary())
+            return in;
+        PdfDictionary dic = (PdfDictionary)dicPar;
+        PdfObject obj = getPdfObject(dic.get(PdfName.PREDICTOR));
+        if (obj == null || !obj.isNumber())
+            return in;
+        int predictor = ((PdfNumber)obj).intValue();
+        if (predictor < 10 && predictor != 2)
+            return in;
+        int width = 1;
+        obj = getPdfObject(dic.get(PdfName.COLUMNS));
+        if (obj != null && obj.isNumber())
+            width = ((PdfNumber)obj).intValue();
+        int colors = 1;
+        obj = getPdfObject(dic.get(PdfName.COLORS));
+        if (obj != null && obj.isNumber())
+            colors = ((PdfNumber)obj).intValue();
+        int bpc = 8;
+        obj = getPdfObject(dic.get(PdfName.BITSPERCOMPONENT));
+        if (obj != null && obj.isNumber())
+            bpc = ((PdfNumber)obj).intValue();
+        // the TIFF predictor is only supported for 8 bits per component
+        if (predictor == 2 && (bpc != 8 || width * colors <= 0))
+            return in;
+        return new PredictorInputStream(in, predictor, width, colors, bpc);
+    }
+
     /** Get the content from a stream applying the required filters.
      * @param stream the stream
      * @throws IOException on error
@@ -2158,24 +2944,9 @@ public class PdfReader implements PdfViewerPreferences {
             file.seek(stream.getOffset());
             file.readFully(b);
             PdfEncryption decrypt = reader.getDecrypt();
-            if (decrypt != null) {
-                PdfObject filter = getPdfObjectRelease(stream.get(PdfName.FILTER));
-                ArrayList filters = new ArrayList();
-                if (filter != null) {
-                    if (filter.isName())
-                        filters.add(filter);
-                    else if (filter.isArray())
-                        filters = ((PdfArray)filter).getArrayList();
-                }
-                boolean skip = false;
-                for (int k = 0; k < filters.size(); ++k) {
-                    PdfObject obj = getPdfObjectRelease((PdfObject)filters.get(k));
-                    if (obj != null && obj.toString().equals("/Crypt")) {
-                        skip = true;
-                        break;
-                    }
-                }
-                if (!skip) {
+            if (decrypt != null && !hasCryptFilter(stream)) {
+                // the key is shared state, the streams may be decoded by several threads
+                synchronized (decrypt) {
                     decrypt.setHashKey(stream.getObjNum(), stream.getObjGen());
                     b = decrypt.decryptByteArray(b);
                 }
@@ -2296,7 +3067,7 @@ public class PdfReader implements PdfViewerPreferences {
      * Gets the byte address of the last xref table.
      * @return the byte address of the last xref table
      */
-    public int getLastXref() {
+    public long getLastXref() {
         return lastXref;
     }
 
@@ -2312,7 +3083,7 @@ public class PdfReader implements PdfViewerPreferences {
      * Gets the byte address of the %%EOF marker.
      * @return the byte address of the %%EOF marker
      */
-    public int getEofPos() {
+    public long getEofPos() {
         return eofPos;
     }
 
@@ -2805,6 +3576,7 @@ public class PdfReader implements PdfViewerPreferences {
     public void close() {
         if (!partial)
             return;
+        objectCache = null;
         try {
             tokens.close();
         }
@@ -2918,6 +3690,7 @@ public class PdfReader implements PdfViewerPreferences {
                     xref[k * 2] = -1;
                     xref[k * 2 + 1] = 0;
                     xrefObj.set(k, null);
+                    uncachePartialObject(k);
                     ++total;
                 }
             }
@@ -3078,7 +3851,7 @@ public class PdfReader implements PdfViewerPreferences {
      * Getter for property fileLength.
      * @return Value of property fileLength.
      */
-    public int getFileLength() {
+    public long getFileLength() {
         return fileLength;
     }
 
@@ -3090,6 +3863,93 @@ public class PdfReader implements PdfViewerPreferences {
         return hybridXref;
     }
 
+    /**
+     * The objects released in partial mode, in release order. Only the
+     * objects not in the xref table are kept here.
+     */
+    static class ObjectCache {
+        private final LinkedHashMap objects = new LinkedHashMap();
+        private final int maxObjects;
+        private final long maxBytes;
+        private long bytes;
+
+        ObjectCache(int maxObjects, long maxBytes) {
+            this.maxObjects = maxObjects;
+            this.maxBytes = maxBytes;
+        }
+
+        void put(int idx, PdfObject obj) {
+            Integer key = new Integer(idx);
+            CachedObject old = (CachedObject)objects.remove(key);
+            if (old != null)
+                bytes -= old.size;
+            CachedObject co = new CachedObject(obj, estimateSize(obj));
+            objects.put(key, co);
+            bytes += co.size;
+            Iterator it = objects.values().iterator();
+            while (it.hasNext() && (objects.size() > maxObjects || (maxBytes > 0 && bytes > maxBytes))) {
+                old = (CachedObject)it.next();
+                bytes -= old.size;
+                it.remove();
+            }
+        }
+
+        PdfObject remove(int idx) {
+            CachedObject co = (CachedObject)objects.remove(new Integer(idx));
+            if (co == null)
+                return null;
+            bytes -= co.size;
+            return co.obj;
+        }
+
+        /**
+         * Gives a rough estimate of the memory used by the object, without
+         * following the indirect references.
+         */
+        static int estimateSize(PdfObject obj) {
+            if (obj == null)
+                return 0;
+            int size = 16;
+            switch (obj.type()) {
+                case PdfObject.STRING:
+                case PdfObject.NAME:
+                    byte b[] = obj.getBytes();
+                    if (b != null)
+                        size += b.length;
+                    break;
+                case PdfObject.ARRAY:
+                    for (Iterator it = ((PdfArray)obj).listIterator(); it.hasNext();)
+                        size += 8 + estimateSize((PdfObject)it.next());
+                    break;
+                case PdfObject.STREAM:
+                    if (obj instanceof PRStream) {
+                        b = ((PRStream)obj).getBytes();
+                        if (b != null)
+                            size += b.length;
+                    }
+                    // fall through
+                case PdfObject.DICTIONARY:
+                    PdfDictionary dic = (PdfDictionary)obj;
+                    for (Iterator it = dic.getKeys().iterator(); it.hasNext();) {
+                        PdfName key = (PdfName)it.next();
+                        size += 32 + estimateSize(dic.get(key));
+                    }
+                    break;
+            }
+            return size;
+        }
+    }
+
+    static class CachedObject {
+        final PdfObject obj;
+        final int size;
+
+        CachedObject(PdfObject obj, int size) {
+            this.obj = obj;
+            this.size = size;
+        }
+    }
+
     static class PageRefs {
         private PdfReader reader;
         private IntHashtable refsp;
@@ -3152,8 +4012,10 @@ public class PdfReader implements PdfViewerPreferences {
          * @return the page dictionary
          */
         public PdfDictionary getPageN(int pageNum) {
-            PRIndirectReference ref = getPageOrigRef(pageNum);
-            return (PdfDictionary)PdfReader.getPdfObject(ref);
+            synchronized (reader) {
+                PRIndirectReference ref = getPageOrigRef(pageNum);
+                return (PdfDictionary)PdfReader.getPdfObject(ref);
+            }
         }
 
         /**
@@ -3161,9 +4023,11 @@ public class PdfReader implements PdfViewerPreferences {
          * @return a dictionary object
          */
         public PdfDictionary getPageNRelease(int pageNum) {
-            PdfDictionary page = getPageN(pageNum);
-            releasePage(pageNum);
-            return page;
+            synchronized (reader) {
+                PdfDictionary page = getPageN(pageNum);
+                releasePage(pageNum);
+                return page;
+            }
         }
 
         /**
@@ -3171,9 +4035,11 @@ public class PdfReader implements PdfViewerPreferences {
          * @return an indirect reference
          */
         public PRIndirectReference getPageOrigRefRelease(int pageNum) {
-            PRIndirectReference ref = getPageOrigRef(pageNum);
-            releasePage(pageNum);
-            return ref;
+            synchronized (reader) {
+                PRIndirectReference ref = getPageOrigRef(pageNum);
+                releasePage(pageNum);
+                return ref;
+            }
         }
 
         /** Gets the page reference to this page.
@@ -3181,13 +4047,13 @@ public class PdfReader implements PdfViewerPreferences {
          * @return the page reference
          */
         public PRIndirectReference getPageOrigRef(int pageNum) {
-            try {
-                --pageNum;
-                if (pageNum < 0 || pageNum >= size())
-                    return null;
-                if (refsn != null)
-                    return (PRIndirectReference)refsn.get(pageNum);
-                else {
+            --pageNum;
+            if (pageNum < 0 || pageNum >= size())
+                return null;
+            if (refsn != null)
+                return (PRIndirectReference)refsn.get(pageNum);
+            synchronized (reader) {
+                try {
                     int n = refsp.get(pageNum);
                     if (n == 0) {
                         PRIndirectReference ref = getSinglePage(pageNum);
@@ -3209,9 +4075,9 @@ public class PdfReader implements PdfViewerPreferences {
                         return new PRIndirectReference(reader, n);
                     }
                 }
-            }
-            catch (Exception e) {
-                throw new ExceptionConverter(e);
+                catch (Exception e) {
+                    throw new ExceptionConverter(e);
+                }
             }
         }
 
@@ -3231,12 +4097,14 @@ public class PdfReader implements PdfViewerPreferences {
             --pageNum;
             if (pageNum < 0 || pageNum >= size())
                 return;
-            if (pageNum != lastPageRead)
-                return;
-            lastPageRead = -1;
-            reader.lastXrefPartial = refsp.get(pageNum);
-            reader.releaseLastXrefPartial();
-            refsp.remove(pageNum);
+            synchronized (reader) {
+                if (pageNum != lastPageRead)
+                    return;
+                lastPageRead = -1;
+                reader.lastXrefPartial = refsp.get(pageNum);
+                reader.releaseLastXrefPartial();
+                refsp.remove(pageNum);
+            }
         }
 
         /**
@@ -3401,6 +4269,7 @@ public class PdfReader implements PdfViewerPreferences {
                     if (reader.partial) {
                         reader.xref[nref * 2] = -1;
                         reader.xref[nref * 2 + 1] = 0;
+                        reader.uncachePartialObject(nref);
                     }
                 }
             }
@@ -51,8 +51,10 @@
 package com.lowagie.text.pdf;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 
@@ -73,6 +75,8 @@ public class PdfSmartCopy extends PdfCopy {
 
 	/** the cache with the streams and references. */
     private HashMap streamMap = null;
+    /** The <CODE>StreamHasher</CODE> of each reader. */
+    private HashMap hashers = new HashMap();
 
     /** Creates a PdfSmartCopy instance. */
     public PdfSmartCopy(Document document, OutputStream os) throws DocumentException {
@@ -96,7 +100,12 @@ public class PdfSmartCopy extends PdfCopy {
         ByteStore streamKey = null;
         boolean validStream = false;
         if (srcObj.isStream()) {
-            streamKey = new ByteStore((PRStream)srcObj);
+            StreamHasher hasher = (StreamHasher)hashers.get(in.getReader());
+            if (hasher == null) {
+                hasher = new StreamHasher();
+                hashers.put(in.getReader(), hasher);
+            }
+            streamKey = hasher.hash(in);
             validStream = true;
             PdfIndirectReference streamRef = (PdfIndirectReference) streamMap.get(streamKey);
             if (streamRef != null) {
@@ -134,94 +143,184 @@ public class PdfSmartCopy extends PdfCopy {
         return theRef;
     }
 
+    /**
+     * Frees the memory used by the hashes of the objects of a reader.
+     * @param reader the reader
+     * @throws IOException
+     */
+    public void freeReader(PdfReader reader) throws IOException {
+        hashers.remove(reader);
+        super.freeReader(reader);
+    }
+
+    /**
+     * The key of a stream in the cache: a 128 bit MD5 hash of the stream
+     * data and of all the objects it refers to.
+     */
     static class ByteStore {
-        private byte[] b;
-        private int hash;
-        private MessageDigest md5;
+        private final byte[] b;
+        private final int hash;
 
-        private void serObject(PdfObject obj, int level, ByteBuffer bb) throws IOException {
-            if (level <= 0)
-                return;
+        ByteStore(byte[] digest) {
+            b = digest;
+            hash = ((b[0] & 0xff) << 24) | ((b[1] & 0xff) << 16) | ((b[2] & 0xff) << 8) | (b[3] & 0xff);
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ByteStore))
+                return false;
+            if (hashCode() != obj.hashCode())
+                return false;
+            return Arrays.equals(b, ((ByteStore)obj).b);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Computes the <CODE>ByteStore</CODE> of the streams of a reader. The objects are fed
+     * to the hash as they are visited, nothing is serialized in memory, and the
+     * stream data is read from the file in small blocks. Each indirect object is
+     * hashed on its own and its hash is remembered, so an object shared by many
+     * streams, like a font file or a color space, is only read once.
+     */
+    static class StreamHasher {
+        /** The hashes of the indirect objects already visited. */
+        private final HashMap memo = new HashMap();
+        /** The indirect objects being hashed, the innermost last. */
+        private final ArrayList path = new ArrayList();
+        /** One digest for each level of <CODE>path</CODE>. */
+        private final ArrayList digests = new ArrayList();
+        /**
+         * The lowest level of <CODE>path</CODE> referenced from an object
+         * deeper in the path; the objects above it depend on where the
+         * cycle was entered and their hash can't be remembered.
+         */
+        private int cycleLevel = Integer.MAX_VALUE;
+        private final byte buf[] = new byte[8192];
+
+        ByteStore hash(PRIndirectReference ref) throws IOException {
+            MessageDigest md = getDigest(0);
+            md.reset();
+            path.clear();
+            cycleLevel = Integer.MAX_VALUE;
+            serObject(ref, md);
+            return new ByteStore(md.digest());
+        }
+
+        private MessageDigest getDigest(int level) {
+            if (level < digests.size())
+                return (MessageDigest)digests.get(level);
+            try {
+                MessageDigest md = MessageDigest.getInstance("MD5");
+                digests.add(md);
+                return md;
+            }
+            catch (Exception e) {
+                throw new ExceptionConverter(e);
+            }
+        }
+
+        private static void update(MessageDigest md, char tag, byte b[]) {
+            md.update((byte)'$');
+            md.update((byte)tag);
+            int len = b.length;
+            md.update((byte)(len >>> 24));
+            md.update((byte)(len >>> 16));
+            md.update((byte)(len >>> 8));
+            md.update((byte)len);
+            md.update(b);
+        }
+
+        private void serObject(PdfObject obj, MessageDigest md) throws IOException {
             if (obj == null) {
-                bb.append("$Lnull");
+                update(md, 'L', PdfNull.PDFNULL.getBytes());
+                return;
+            }
+            if (obj.isIndirect()) {
+                serIndirect((PRIndirectReference)obj, md);
                 return;
             }
-            obj = PdfReader.getPdfObject(obj);
             if (obj.isStream()) {
-                bb.append("$B");
-                serDic((PdfDictionary)obj, level - 1, bb);
-                if (level > 0) {
-                    md5.reset();
-                    bb.append(md5.digest(PdfReader.getStreamBytesRaw((PRStream)obj)));
+                md.update((byte)'$');
+                md.update((byte)'B');
+                serDic((PdfDictionary)obj, md);
+                InputStream in = PdfReader.getStreamInputStreamRaw((PRStream)obj);
+                try {
+                    int n;
+                    while ((n = in.read(buf)) > 0)
+                        md.update(buf, 0, n);
+                }
+                finally {
+                    try{in.close();}catch(Exception e){}
                 }
             }
             else if (obj.isDictionary()) {
-                serDic((PdfDictionary)obj, level - 1, bb);
+                serDic((PdfDictionary)obj, md);
             }
             else if (obj.isArray()) {
-                serArray((PdfArray)obj, level - 1, bb);
+                PdfArray array = (PdfArray)obj;
+                md.update((byte)'$');
+                md.update((byte)'A');
+                for (int k = 0; k < array.size(); ++k)
+                    serObject(array.getPdfObject(k), md);
+                md.update((byte)'$');
+                md.update((byte)'a');
             }
             else if (obj.isString()) {
-                bb.append("$S").append(obj.toString());
+                update(md, 'S', obj.getBytes());
             }
             else if (obj.isName()) {
-                bb.append("$N").append(obj.toString());
+                update(md, 'N', obj.getBytes());
             }
             else
-                bb.append("$L").append(obj.toString());
+                update(md, 'L', PdfEncodings.convertToBytes(obj.toString(), null));
         }
-        
-        private void serDic(PdfDictionary dic, int level, ByteBuffer bb) throws IOException {
-            bb.append("$D");
-            if (level <= 0)
-                return;
+
+        private void serDic(PdfDictionary dic, MessageDigest md) throws IOException {
+            md.update((byte)'$');
+            md.update((byte)'D');
             Object[] keys = dic.getKeys().toArray();
             Arrays.sort(keys);
             for (int k = 0; k < keys.length; ++k) {
-                serObject((PdfObject)keys[k], level, bb);
-                serObject(dic.get((PdfName)keys[k]), level, bb);
-            }
-        }
-        
-        private void serArray(PdfArray array, int level, ByteBuffer bb) throws IOException {
-            bb.append("$A");
-            if (level <= 0)
-                return;
-            for (int k = 0; k < array.size(); ++k) {
-                serObject(array.getPdfObject(k), level, bb);
-            }
-        }
-        
-        ByteStore(PRStream str) throws IOException {
-            try {
-                md5 = MessageDigest.getInstance("MD5");
+                serObject((PdfObject)keys[k], md);
+                serObject(dic.get((PdfName)keys[k]), md);
             }
-            catch (Exception e) {
-                throw new ExceptionConverter(e);
-            }
-            ByteBuffer bb = new ByteBuffer();
-            int level = 100;
-            serObject(str, level, bb);
-            this.b = bb.toByteArray();
-            md5 = null;
-        }
-
-        public boolean equals(Object obj) {
-            if (!(obj instanceof ByteStore))
-                return false;
-            if (hashCode() != obj.hashCode())
-                return false;
-            return Arrays.equals(b, ((ByteStore)obj).b);
+            md.update((byte)'$');
+            md.update((byte)'d');
         }
 
-        public int hashCode() {
-            if (hash == 0) {
-                int len = b.length;
-                for (int k = 0; k < len; ++k) {
-                    hash = hash * 31 + (b[k] & 0xff);
+        private void serIndirect(PRIndirectReference ref, MessageDigest md) throws IOException {
+            RefKey key = new RefKey(ref);
+            byte digest[] = (byte[])memo.get(key);
+            if (digest == null) {
+                int level = path.indexOf(key);
+                if (level >= 0) {
+                    // a cycle, refer to the object by its distance in the path
+                    if (level < cycleLevel)
+                        cycleLevel = level;
+                    update(md, 'C', PdfEncodings.convertToBytes(String.valueOf(path.size() - level), null));
+                    return;
+                }
+                level = path.size();
+                path.add(key);
+                MessageDigest sub = getDigest(level + 1);
+                sub.reset();
+                try {
+                    serObject(PdfReader.getPdfObjectRelease(ref), sub);
+                }
+                finally {
+                    path.remove(level);
+                }
+                digest = sub.digest();
+                if (cycleLevel >= level) {
+                    memo.put(key, digest);
+                    cycleLevel = Integer.MAX_VALUE;
                 }
             }
-            return hash;
+            update(md, 'R', digest);
         }
     }
 }
\ No newline at end of file
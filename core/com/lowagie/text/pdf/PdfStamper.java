@@ -126,6 +126,38 @@ public class PdfStamper
         stamper = new PdfStamperImp(reader, os, pdfVersion, append);
     }
 
+    private PdfStamper() {
+    }
+
+    /**
+     * Adds a new revision to a document without writing the document again.
+     * It's the append mode of <CODE>PdfStamper(PdfReader, OutputStream, char, boolean)</CODE>
+     * where <CODE>os</CODE> already continues the original document, usually a
+     * <CODE>FileOutputStream</CODE> opened in append mode on the file that was
+     * read. Only the objects that changed are written, so the time and the
+     * memory depend on the changes and not on the size of the document,
+     * particularly if the reader is in partial mode:
+     * <pre>
+     * PdfReader reader = new PdfReader(new RandomAccessFileOrArray("archive.pdf"), null);
+     * PdfStamper stamper = PdfStamper.createIncrementalUpdate(reader, new FileOutputStream("archive.pdf", true));
+     * stamper.addAnnotation(annotation, 1);
+     * stamper.close();
+     * </pre>
+     * If the stamping fails after something was written the file is left with
+     * an incomplete revision at the end.
+     * @param reader the original document. It cannot be reused
+     * @param os the output stream positioned at the end of the original document
+     * @return a <CODE>PdfStamper</CODE>
+     * @throws DocumentException on error
+     * @throws IOException on error
+     * @since 2.1.8
+     */
+    public static PdfStamper createIncrementalUpdate(PdfReader reader, OutputStream os) throws DocumentException, IOException {
+        PdfStamper stp = new PdfStamper();
+        stp.stamper = new PdfStamperImp(reader, os, '\0', true, false);
+        return stp;
+    }
+
     /** Gets the optional <CODE>String</CODE> map to add or change values in
      * the info dictionary.
      * @return the map or <CODE>null</CODE>
@@ -46,9 +46,11 @@
  */
 package com.lowagie.text.pdf;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -103,6 +105,22 @@ class PdfStamperImp extends PdfWriter {
      * @throws IOException
      */
     PdfStamperImp(PdfReader reader, OutputStream os, char pdfVersion, boolean append) throws DocumentException, IOException {
+        this(reader, os, pdfVersion, append, true);
+    }
+
+    /** Creates new PdfStamperImp.
+     * @param reader the read PDF
+     * @param os the output destination
+     * @param pdfVersion the new pdf version or '\0' to keep the same version as the original
+     * document
+     * @param append
+     * @param copyOriginal in append mode, if <CODE>false</CODE> the original
+     * document is not written to <CODE>os</CODE>, that already continues it
+     * @throws DocumentException on error
+     * @throws IOException
+     * @since 2.1.8
+     */
+    PdfStamperImp(PdfReader reader, OutputStream os, char pdfVersion, boolean append, boolean copyOriginal) throws DocumentException, IOException {
         super(new PdfDocument(), os);
         if (!reader.isOpenedWithFullPermissions())
             throw new BadPasswordException("PdfReader not opened with owner password");
@@ -118,11 +136,21 @@ class PdfStamperImp extends PdfWriter {
             if (reader.isEncrypted())
                 crypto = new PdfEncryption(reader.getDecrypt());
             pdf_version.setAppendmode(true);
-            file.reOpen();
-            byte buf[] = new byte[8192];
-            int n;
-            while ((n = file.read(buf)) > 0)
-                this.os.write(buf, 0, n);
+            if (!copyOriginal) {
+                // the offsets of the new revision continue the original
+                this.os.counter = file.length();
+            }
+            else {
+                long length = file.length();
+                if (os instanceof FileOutputStream) {
+                    // file to file, the bytes don't go through the heap
+                    file.copyTo(0, length, os);
+                    this.os.counter = length;
+                }
+                else {
+                    file.copyTo(0, length, this.os);
+                }
+            }
             file.close();
             prevxref = reader.getLastXref();
             reader.setAppendable(true);
@@ -159,9 +187,11 @@ class PdfStamperImp extends PdfWriter {
         	flatFreeTextFields();
         addFieldResources();
         PdfDictionary catalog = reader.getCatalog();
-        PdfDictionary pages = (PdfDictionary)PdfReader.getPdfObject(catalog.get(PdfName.PAGES));
-        pages.put(PdfName.ITXT, new PdfString(Document.getRelease()));
-        markUsed(pages);
+        // in append mode the root of the pages is not written again only for the version
+        if (!append) {
+            PdfDictionary pages = (PdfDictionary)PdfReader.getPdfObject(catalog.get(PdfName.PAGES));
+            pages.put(PdfName.ITXT, new PdfString(Document.getRelease()));
+        }
         PdfDictionary acroForm = (PdfDictionary)PdfReader.getPdfObject(catalog.get(PdfName.ACROFORM), reader.getCatalog());
         if (acroFields != null && acroFields.getXfa().isChanged()) {
             markUsed(acroForm);
@@ -276,7 +306,7 @@ class PdfStamperImp extends PdfWriter {
                 for (int k = 0; k < keys.length; ++k) {
                     int j = keys[k];
                     PdfObject obj = reader.getPdfObjectRelease(j);
-                    if (obj != null && skipInfo != j && j < initialXrefSize) {
+                    if (obj != null && skipInfo != j && j < initialXrefSize && !isUnchanged(obj, j)) {
                         addToBody(obj, j, j != rootN);
                     }
                 }
@@ -316,8 +346,14 @@ class PdfStamperImp extends PdfWriter {
             }
             fileID = crypto.getFileID();
         }
-        else
-            fileID = PdfEncryption.createInfoId(PdfEncryption.createDocumentId());
+        else {
+            // a new revision keeps the permanent identifier of the document
+            PdfArray oldID = append ? reader.getTrailer().getAsArray(PdfName.ID) : null;
+            if (oldID != null && oldID.getAsString(0) != null)
+                fileID = PdfEncryption.createInfoId(oldID.getAsString(0).getOriginalBytes());
+            else
+                fileID = PdfEncryption.createInfoId(PdfEncryption.createDocumentId());
+        }
         PRIndirectReference iRoot = (PRIndirectReference)reader.trailer.get(PdfName.ROOT);
         PdfIndirectReference root = new PdfIndirectReference(0, getNewObjectNumber(reader, iRoot.getNumber(), 0));
         PdfIndirectReference info = null;
@@ -1456,6 +1492,64 @@ class PdfStamperImp extends PdfWriter {
             marked.put(num, 1);
     }
 
+    /**
+     * Checks if a marked object is the same as in the original document, in
+     * which case it doesn't need to be written again. The original is read
+     * again from the file, this is only possible with a reader in partial mode.
+     * @param obj the object
+     * @param num the number of the object
+     * @return <CODE>true</CODE> if the object is known to be unchanged
+     * @throws IOException on error
+     * @since 2.1.8
+     */
+    protected boolean isUnchanged(PdfObject obj, int num) throws IOException {
+        if (obj.isStream())
+            return false;
+        return isSameObject(obj, reader.readOriginalObject(num));
+    }
+
+    private static boolean isSameObject(PdfObject obj1, PdfObject obj2) {
+        if (obj1 == null || obj2 == null || obj1.type() != obj2.type())
+            return false;
+        switch (obj1.type()) {
+            case PdfObject.DICTIONARY: {
+                PdfDictionary dic1 = (PdfDictionary)obj1;
+                PdfDictionary dic2 = (PdfDictionary)obj2;
+                if (dic1.size() != dic2.size())
+                    return false;
+                for (Iterator it = dic1.getKeys().iterator(); it.hasNext();) {
+                    PdfName key = (PdfName)it.next();
+                    if (!isSameObject(dic1.get(key), dic2.get(key)))
+                        return false;
+                }
+                return true;
+            }
+            case PdfObject.ARRAY: {
+                PdfArray ar1 = (PdfArray)obj1;
+                PdfArray ar2 = (PdfArray)obj2;
+                if (ar1.size() != ar2.size())
+                    return false;
+                for (int k = 0; k < ar1.size(); ++k) {
+                    if (!isSameObject(ar1.getPdfObject(k), ar2.getPdfObject(k)))
+                        return false;
+                }
+                return true;
+            }
+            case PdfObject.INDIRECT: {
+                PdfIndirectReference ref1 = (PdfIndirectReference)obj1;
+                PdfIndirectReference ref2 = (PdfIndirectReference)obj2;
+                return ref1.getNumber() == ref2.getNumber() && ref1.getGeneration() == ref2.getGeneration();
+            }
+            case PdfObject.STRING:
+                if (((PdfString)obj1).isHexWriting() != ((PdfString)obj2).isHexWriting())
+                    return false;
+                break;
+            case PdfObject.STREAM:
+                return false;
+        }
+        return Arrays.equals(obj1.getBytes(), obj2.getBytes());
+    }
+
     /**
      * Getter for property append.
      * @return Value of property append.
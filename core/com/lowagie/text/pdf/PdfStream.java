@@ -114,11 +114,16 @@ public class PdfStream extends PdfDictionary {
      * @since	2.1.3
      */
     protected int compressionLevel = NO_COMPRESSION;
+    /**
+     * Is the stream marked for compression but not yet deflated?
+     * @since	2.1.8
+     */
+    protected boolean compressionPending = false;
     
     protected ByteArrayOutputStream streamBytes = null;
     protected InputStream inputStream;
     protected PdfIndirectReference ref;
-    protected int inputStreamLength = -1;
+    protected long inputStreamLength = -1;
     protected PdfWriter writer;
     protected int rawLength;
         
@@ -212,6 +217,18 @@ public class PdfStream extends PdfDictionary {
 	 * @since	2.1.3
      */
     public void flateCompress(int compressionLevel) {
+        flateCompress(compressionLevel, null);
+    }
+    
+    /**
+     * Compresses the stream. If the writer has a compression pool the stream
+     * is only marked for compression; the deflating is done by a worker thread
+     * when the stream is added to the body.
+	 * @param compressionLevel the compression level (0 = best speed, 9 = best compression, -1 is default)
+     * @param writer the writer the stream is going to be added to, or <CODE>null</CODE>
+     * @since	2.1.8
+     */
+    void flateCompress(int compressionLevel, PdfWriter writer) {
         if (!Document.compress)
             return;
         // check if the flateCompress-method has already been
@@ -238,7 +255,32 @@ public class PdfStream extends PdfDictionary {
                 throw new RuntimeException("Stream could not be compressed: filter is not a name or array.");
             }
         }
+        compressed = true;
+        compressionPending = true;
+        if (writer == null || !writer.isParallelCompression())
+            completeCompression();
+    }
+    
+    /**
+     * Tells if the stream is marked for compression but not yet deflated.
+     * @return <CODE>true</CODE> if the deflating is still to be done
+     * @since	2.1.8
+     */
+    boolean isCompressionPending() {
+        return compressionPending;
+    }
+    
+    /**
+     * Deflates a stream that was marked for compression by
+     * {@link #flateCompress(int, PdfWriter)}. Does nothing if there is no
+     * pending compression.
+     * @since	2.1.8
+     */
+    void completeCompression() {
+        if (!compressionPending)
+            return;
         try {
+            PdfObject filter = PdfReader.getPdfObject(get(PdfName.FILTER));
             // compress
             ByteArrayOutputStream stream = new ByteArrayOutputStream();
             Deflater deflater = new Deflater(compressionLevel);
@@ -261,7 +303,7 @@ public class PdfStream extends PdfDictionary {
                 filters.add(PdfName.FLATEDECODE);
                 put(PdfName.FILTER, filters);
             }
-            compressed = true;
+            compressionPending = false;
         }
         catch(IOException ioe) {
             throw new ExceptionConverter(ioe);
@@ -285,6 +327,7 @@ public class PdfStream extends PdfDictionary {
      * @see com.lowagie.text.pdf.PdfDictionary#toPdf(com.lowagie.text.pdf.PdfWriter, java.io.OutputStream)
      */
     public void toPdf(PdfWriter writer, OutputStream os) throws IOException {
+        completeCompression();
         if (inputStream != null && compressed)
             put(PdfName.FILTER, PdfName.FLATEDECODE);
         PdfEncryption crypto = null;
@@ -369,6 +412,7 @@ public class PdfStream extends PdfDictionary {
      * @throws IOException on error
      */    
     public void writeContent(OutputStream os) throws IOException {
+        completeCompression();
         if (streamBytes != null)
             streamBytes.writeTo(os);
         else if (bytes != null)
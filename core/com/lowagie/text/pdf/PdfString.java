@@ -131,6 +131,22 @@ public class PdfString extends PdfObject {
         value = PdfEncodings.convertToString(bytes, null);
         encoding = NOTHING;
     }
+
+    /**
+     * Constructs a <CODE>PdfString</CODE> read from a document. The bytes
+     * are only converted to a <CODE>String</CODE> when it's needed.
+     *
+     * @param bytes the bytes of the string, as read
+     * @param hexWriting <CODE>true</CODE> if the string was written in hex
+     * @since 2.1.8
+     */
+    PdfString(byte[] bytes, boolean hexWriting) {
+        super(STRING);
+        this.bytes = bytes;
+        value = null;
+        encoding = null;
+        this.hexWriting = hexWriting;
+    }
     
     // methods overriding some methods in PdfObject
     
@@ -167,6 +183,8 @@ public class PdfString extends PdfObject {
      * @return A <CODE>String</CODE>
      */
     public String toString() {
+        if (value == null && bytes != null)
+            value = PdfEncodings.convertToString(bytes, null);
         return value;
     }
     
@@ -218,11 +236,13 @@ public class PdfString extends PdfObject {
     void decrypt(PdfReader reader) {
         PdfEncryption decrypt = reader.getDecrypt();
         if (decrypt != null) {
-            originalValue = value;
-            decrypt.setHashKey(objNum, objGen);
-            bytes = PdfEncodings.convertToBytes(value, null);
-            bytes = decrypt.decryptByteArray(bytes);
-            value = PdfEncodings.convertToString(bytes, null);
+            originalValue = toString();
+            // the key is shared with the streams, that may be decrypted by other threads
+            synchronized (decrypt) {
+                decrypt.setHashKey(objNum, objGen);
+                bytes = decrypt.decryptByteArray(getBytes());
+            }
+            value = null;
         }
     }
    
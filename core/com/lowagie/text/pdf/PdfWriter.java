@@ -53,6 +53,7 @@ import java.awt.Color;
 import java.awt.color.ICC_Profile;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -60,9 +61,16 @@ import java.util.LinkedHashMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.security.cert.Certificate;
 
 import com.lowagie.text.DocListener;
@@ -132,133 +140,63 @@ public class PdfWriter extends DocWriter implements
         // inner classes
 
         /**
-         * <CODE>PdfCrossReference</CODE> is an entry in the PDF Cross-Reference table.
+         * An object waiting in the compression pipeline to be written to the body.
+         * Either <CODE>bytes</CODE> holds the object already serialized or
+         * <CODE>deflate</CODE> is the stream compression running on a worker thread.
+         * @since 2.1.8
          */
+        static class PendingObject {
+            final int refnum;
+            final PdfIndirectObject indirect;
+            final ByteBuffer bytes;
+            final Future deflate;
 
-        static class PdfCrossReference implements Comparable {
-
-            // membervariables
-            private int type;
-
-            /**	Byte offset in the PDF file. */
-            private int offset;
-
-            private int refnum;
-            /**	generation of the object. */
-            private int generation;
-
-            // constructors
-            /**
-             * Constructs a cross-reference element for a PdfIndirectObject.
-             * @param refnum
-             * @param	offset		byte offset of the object
-             * @param	generation	generation number of the object
-             */
-
-            PdfCrossReference(int refnum, int offset, int generation) {
-                type = 0;
-                this.offset = offset;
-                this.refnum = refnum;
-                this.generation = generation;
-            }
-
-            /**
-             * Constructs a cross-reference element for a PdfIndirectObject.
-             * @param refnum
-             * @param	offset		byte offset of the object
-             */
-
-            PdfCrossReference(int refnum, int offset) {
-                type = 1;
-                this.offset = offset;
+            PendingObject(int refnum, ByteBuffer bytes) {
                 this.refnum = refnum;
-                this.generation = 0;
+                this.indirect = null;
+                this.bytes = bytes;
+                this.deflate = null;
             }
 
-            PdfCrossReference(int type, int refnum, int offset, int generation) {
-                this.type = type;
-                this.offset = offset;
+            PendingObject(int refnum, PdfIndirectObject indirect, Future deflate) {
                 this.refnum = refnum;
-                this.generation = generation;
-            }
-
-            int getRefnum() {
-                return refnum;
-            }
-
-            /**
-             * Returns the PDF representation of this <CODE>PdfObject</CODE>.
-             * @param os
-             * @throws IOException
-             */
-
-            public void toPdf(OutputStream os) throws IOException {
-                StringBuffer off = new StringBuffer("0000000000").append(offset);
-                off.delete(0, off.length() - 10);
-                StringBuffer gen = new StringBuffer("00000").append(generation);
-                gen.delete(0, gen.length() - 5);
-
-                off.append(' ').append(gen).append(generation == GENERATION_MAX ? " f \n" : " n \n");
-                os.write(getISOBytes(off.toString()));
-            }
-
-            /**
-             * Writes PDF syntax to the OutputStream
-             * @param midSize
-             * @param os
-             * @throws IOException
-             */
-            public void toPdf(int midSize, OutputStream os) throws IOException {
-                os.write((byte)type);
-                while (--midSize >= 0)
-                    os.write((byte)((offset >>> (8 * midSize)) & 0xff));
-                os.write((byte)((generation >>> 8) & 0xff));
-                os.write((byte)(generation & 0xff));
-            }
-
-            /**
-             * @see java.lang.Comparable#compareTo(java.lang.Object)
-             */
-            public int compareTo(Object o) {
-                PdfCrossReference other = (PdfCrossReference)o;
-                return (refnum < other.refnum ? -1 : (refnum==other.refnum ? 0 : 1));
-            }
-
-            /**
-             * @see java.lang.Object#equals(java.lang.Object)
-             */
-            public boolean equals(Object obj) {
-                if (obj instanceof PdfCrossReference) {
-                    PdfCrossReference other = (PdfCrossReference)obj;
-                    return (refnum == other.refnum);
-                }
-                else
-                    return false;
+                this.indirect = indirect;
+                this.bytes = null;
+                this.deflate = deflate;
             }
-
-            /**
-             * @see java.lang.Object#hashCode()
-             */
-            public int hashCode() {
-				return refnum;
-			}
-
         }
 
         private static final int OBJSINSTREAM = 200;
 
+        private static final byte XREF_NONE = -1;
+        private static final byte XREF_FREE = 0;
+        private static final byte XREF_IN_USE = 1;
+        private static final byte XREF_COMPRESSED = 2;
+
         // membervariables
 
-        /** array containing the cross-reference table of the normal objects. */
-        private TreeSet xrefs;
+        /** the type of each cross-reference entry indexed by object number: 0 free, 1 in use, 2 in an object stream, -1 no entry. */
+        private byte xrefType[];
+        /** the byte offset of each object, or the number of the object stream that contains it. */
+        private long xrefOffset[];
+        /** the generation of each object, or its index in the object stream. */
+        private int xrefGeneration[];
+        /** one more than the highest object number with an entry. */
+        private int xrefSize;
         private int refnum;
         /** the current byte position in the body. */
-        private int position;
+        private long position;
         private PdfWriter writer;
         private ByteBuffer index;
         private ByteBuffer streamObjects;
         private int currentObjNum;
         private int numObj = 0;
+        /** the workers deflating the streams, <CODE>null</CODE> if compression is done in line. */
+        private ExecutorService compressionPool;
+        /** the objects waiting to be written, in the order they were added. */
+        private LinkedList pending = new LinkedList();
+        /** the maximum number of objects waiting to be written. */
+        private int maxPending;
 
         // constructors
 
@@ -267,11 +205,26 @@ public class PdfWriter extends DocWriter implements
          * @param writer
          */
         PdfBody(PdfWriter writer) {
-            xrefs = new TreeSet();
-            xrefs.add(new PdfCrossReference(0, 0, GENERATION_MAX));
+            xrefType = new byte[256];
+            xrefOffset = new long[256];
+            xrefGeneration = new int[256];
+            Arrays.fill(xrefType, XREF_NONE);
+            setXref(0, XREF_FREE, 0, GENERATION_MAX);
             position = writer.getOs().getCounter();
             refnum = 1;
             this.writer = writer;
+            int threads = writer.getCompressionThreads();
+            if (threads > 1) {
+                // the threads are daemons and the pool is shut down with the cross-reference table
+                compressionPool = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS, new LinkedBlockingQueue(), new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "iText compression");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+                maxPending = threads * 4;
+            }
         }
 
         // methods
@@ -280,7 +233,80 @@ public class PdfWriter extends DocWriter implements
             this.refnum = refnum;
         }
 
-        private PdfWriter.PdfBody.PdfCrossReference addToObjStm(PdfObject obj, int nObj) throws IOException {
+        /**
+         * Sets the cross-reference entry of an object, replacing any previous one.
+         * @param refnum the object number
+         * @param type the entry type
+         * @param offset the byte offset or the object stream number
+         * @param generation the generation or the index in the object stream
+         */
+        private void setXref(int refnum, byte type, long offset, int generation) {
+            if (refnum >= xrefType.length) {
+                int capacity = Math.max(refnum + 1, xrefType.length * 2);
+                byte newType[] = new byte[capacity];
+                System.arraycopy(xrefType, 0, newType, 0, xrefType.length);
+                Arrays.fill(newType, xrefType.length, capacity, XREF_NONE);
+                long newOffset[] = new long[capacity];
+                System.arraycopy(xrefOffset, 0, newOffset, 0, xrefOffset.length);
+                int newGeneration[] = new int[capacity];
+                System.arraycopy(xrefGeneration, 0, newGeneration, 0, xrefGeneration.length);
+                xrefType = newType;
+                xrefOffset = newOffset;
+                xrefGeneration = newGeneration;
+            }
+            xrefType[refnum] = type;
+            xrefOffset[refnum] = offset;
+            xrefGeneration[refnum] = generation;
+            if (refnum >= xrefSize)
+                xrefSize = refnum + 1;
+        }
+
+        /**
+         * Writes the cross-reference entry of an object in the table format.
+         * @param refnum the object number
+         * @param buf a 20 bytes work buffer
+         * @param os the stream to write to
+         * @throws IOException on error
+         */
+        private void writeXref(int refnum, byte buf[], OutputStream os) throws IOException {
+            long offset = xrefOffset[refnum];
+            if (offset > 9999999999L)
+                throw new IOException("The offset " + offset + " doesn't fit in a cross-reference table; use full compression.");
+            for (int k = 9; k >= 0; --k) {
+                buf[k] = (byte)('0' + offset % 10);
+                offset /= 10;
+            }
+            buf[10] = ' ';
+            int generation = xrefGeneration[refnum];
+            for (int k = 15; k >= 11; --k) {
+                buf[k] = (byte)('0' + generation % 10);
+                generation /= 10;
+            }
+            buf[16] = ' ';
+            buf[17] = (byte)(xrefType[refnum] == XREF_FREE ? 'f' : 'n');
+            buf[18] = ' ';
+            buf[19] = '\n';
+            os.write(buf, 0, 20);
+        }
+
+        /**
+         * Writes the cross-reference entry of an object in the binary format of the xref streams.
+         * @param refnum the object number
+         * @param midSize the number of bytes of the offset field
+         * @param os the stream to write to
+         * @throws IOException on error
+         */
+        private void writeXref(int refnum, int midSize, OutputStream os) throws IOException {
+            long offset = xrefOffset[refnum];
+            int generation = xrefGeneration[refnum];
+            os.write(xrefType[refnum]);
+            while (--midSize >= 0)
+                os.write((byte)((offset >>> (8 * midSize)) & 0xff));
+            os.write((byte)((generation >>> 8) & 0xff));
+            os.write((byte)(generation & 0xff));
+        }
+
+        private void addToObjStm(PdfObject obj, int nObj) throws IOException {
             if (numObj >= OBJSINSTREAM)
                 flushObjStm();
             if (index == null) {
@@ -297,7 +323,7 @@ public class PdfWriter extends DocWriter implements
             writer.crypto = enc;
             streamObjects.append(' ');
             index.append(nObj).append(' ').append(p).append(' ');
-            return new PdfWriter.PdfBody.PdfCrossReference(2, nObj, currentObjNum, idx);
+            setXref(nObj, XREF_COMPRESSED, currentObjNum, idx);
         }
 
         private void flushObjStm() throws IOException {
@@ -306,7 +332,7 @@ public class PdfWriter extends DocWriter implements
             int first = index.size();
             index.append(streamObjects);
             PdfStream stream = new PdfStream(index.toByteArray());
-            stream.flateCompress(writer.getCompressionLevel());
+            stream.flateCompress(writer.getCompressionLevel(), writer);
             stream.put(PdfName.TYPE, PdfName.OBJSTM);
             stream.put(PdfName.N, new PdfNumber(numObj));
             stream.put(PdfName.FIRST, new PdfNumber(first));
@@ -321,8 +347,8 @@ public class PdfWriter extends DocWriter implements
          * <P>
          * This methods creates a <CODE>PdfIndirectObject</CODE> with a
          * certain number, containing the given <CODE>PdfObject</CODE>.
-         * It also adds a <CODE>PdfCrossReference</CODE> for this object
-         * to an <CODE>ArrayList</CODE> that will be used to build the
+         * It also records the cross-reference entry of this object
+         * in the table that will be used to build the
          * Cross-reference Table.
          *
          * @param		object			a <CODE>PdfObject</CODE>
@@ -349,7 +375,7 @@ public class PdfWriter extends DocWriter implements
 
         int getIndirectReferenceNumber() {
             int n = refnum++;
-            xrefs.add(new PdfCrossReference(n, 0, GENERATION_MAX));
+            setXref(n, XREF_FREE, 0, GENERATION_MAX);
             return n;
         }
 
@@ -359,8 +385,8 @@ public class PdfWriter extends DocWriter implements
          * <P>
          * This methods creates a <CODE>PdfIndirectObject</CODE> with the number given by
          * <CODE>ref</CODE>, containing the given <CODE>PdfObject</CODE>.
-         * It also adds a <CODE>PdfCrossReference</CODE> for this object
-         * to an <CODE>ArrayList</CODE> that will be used to build the
+         * It also records the cross-reference entry of this object
+         * in the table that will be used to build the
          * Cross-reference Table.
          *
          * @param		object			a <CODE>PdfObject</CODE>
@@ -383,34 +409,107 @@ public class PdfWriter extends DocWriter implements
 
         PdfIndirectObject add(PdfObject object, int refNumber, boolean inObjStm) throws IOException {
             if (inObjStm && object.canBeInObjStm() && writer.isFullCompression()) {
-                PdfCrossReference pxref = addToObjStm(object, refNumber);
+                addToObjStm(object, refNumber);
+                return new PdfIndirectObject(refNumber, object, writer);
+            }
+            else if (compressionPool != null && writer.crypto == null && object.isStream() && ((PdfStream)object).isCompressionPending()) {
+                final PdfStream stream = (PdfStream)object;
                 PdfIndirectObject indirect = new PdfIndirectObject(refNumber, object, writer);
-                if (!xrefs.add(pxref)) {
-                    xrefs.remove(pxref);
-                    xrefs.add(pxref);
-                }
+                Future deflate = compressionPool.submit(new Runnable() {
+                    public void run() {
+                        stream.completeCompression();
+                    }
+                });
+                pending.add(new PendingObject(refNumber, indirect, deflate));
+                flushPending(false);
+                while (pending.size() > maxPending)
+                    writePending(true);
                 return indirect;
             }
             else {
                 PdfIndirectObject indirect = new PdfIndirectObject(refNumber, object, writer);
-                PdfCrossReference pxref = new PdfCrossReference(refNumber, position);
-                if (!xrefs.add(pxref)) {
-                    xrefs.remove(pxref);
-                    xrefs.add(pxref);
+                if (!pending.isEmpty()) {
+                    if (writer.crypto == null && !(object.isStream() && ((PdfStream)object).inputStream != null)) {
+                        // serialize now, write after the streams still being deflated
+                        ByteBuffer bytes = new ByteBuffer();
+                        indirect.writeTo(bytes);
+                        pending.add(new PendingObject(refNumber, bytes));
+                        flushPending(false);
+                        return indirect;
+                    }
+                    flushPending(true);
                 }
-                indirect.writeTo(writer.getOs());
-                position = writer.getOs().getCounter();
+                write(refNumber, indirect);
                 return indirect;
             }
         }
 
+        /**
+         * Writes an indirect object at the current position of the body.
+         * @param refNumber the object number
+         * @param indirect the object to write
+         * @throws IOException on error
+         */
+        private void write(int refNumber, PdfIndirectObject indirect) throws IOException {
+            setXref(refNumber, XREF_IN_USE, position, 0);
+            indirect.writeTo(writer.getOs());
+            position = writer.getOs().getCounter();
+        }
+
+        /**
+         * Writes the objects waiting in the compression pipeline, in the order
+         * they were added, so that the cross-reference offsets stay correct.
+         * @param wait if <CODE>true</CODE> waits for all the pending compressions,
+         * otherwise stops at the first object whose compression is not finished
+         * @throws IOException on error
+         */
+        private void flushPending(boolean wait) throws IOException {
+            while (!pending.isEmpty() && writePending(wait))
+                ;
+        }
+
+        /**
+         * Writes the first object waiting in the compression pipeline.
+         * @param wait if <CODE>true</CODE> waits for the compression to finish
+         * @return <CODE>false</CODE> if the compression is not finished and <CODE>wait</CODE> is <CODE>false</CODE>
+         * @throws IOException on error
+         */
+        private boolean writePending(boolean wait) throws IOException {
+            PendingObject obj = (PendingObject)pending.getFirst();
+            if (obj.deflate != null) {
+                if (!wait && !obj.deflate.isDone())
+                    return false;
+                try {
+                    obj.deflate.get();
+                }
+                catch (InterruptedException e) {
+                    throw new InterruptedIOException(e.getMessage());
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    throw new ExceptionConverter(new Exception(cause));
+                }
+            }
+            pending.removeFirst();
+            if (obj.bytes != null) {
+                setXref(obj.refnum, XREF_IN_USE, position, 0);
+                obj.bytes.writeTo(writer.getOs());
+                position = writer.getOs().getCounter();
+            }
+            else
+                write(obj.refnum, obj.indirect);
+            return true;
+        }
+
         /**
          * Returns the offset of the Cross-Reference table.
          *
          * @return		an offset
          */
 
-        int offset() {
+        long offset() {
             return position;
         }
 
@@ -421,7 +520,7 @@ public class PdfWriter extends DocWriter implements
          */
 
         int size() {
-            return Math.max(((PdfCrossReference)xrefs.last()).getRefnum() + 1, refnum);
+            return Math.max(xrefSize, refnum);
         }
 
         /**
@@ -435,33 +534,46 @@ public class PdfWriter extends DocWriter implements
          * @throws IOException
          */
 
-        void writeCrossReferenceTable(OutputStream os, PdfIndirectReference root, PdfIndirectReference info, PdfIndirectReference encryption, PdfObject fileID, int prevxref) throws IOException {
+        void writeCrossReferenceTable(OutputStream os, PdfIndirectReference root, PdfIndirectReference info, PdfIndirectReference encryption, PdfObject fileID, long prevxref) throws IOException {
             int refNumber = 0;
             if (writer.isFullCompression()) {
                 flushObjStm();
+            }
+            flushPending(true);
+            if (compressionPool != null) {
+                compressionPool.shutdown();
+                compressionPool = null;
+            }
+            if (writer.isFullCompression()) {
                 refNumber = getIndirectReferenceNumber();
-                xrefs.add(new PdfCrossReference(refNumber, position));
+                setXref(refNumber, XREF_IN_USE, position, 0);
             }
-            PdfCrossReference entry = (PdfCrossReference)xrefs.first();
-            int first = entry.getRefnum();
-            int len = 0;
-            ArrayList sections = new ArrayList();
-            for (Iterator i = xrefs.iterator(); i.hasNext(); ) {
-                entry = (PdfCrossReference)i.next();
-                if (first + len == entry.getRefnum())
-                    ++len;
-                else {
-                    sections.add(new Integer(first));
-                    sections.add(new Integer(len));
-                    first = entry.getRefnum();
-                    len = 1;
+            // the sections are pairs of first object number and length
+            int sectionFirst[] = new int[16];
+            int sectionLength[] = new int[16];
+            int numSections = 0;
+            for (int k = 0; k < xrefSize; ++k) {
+                if (xrefType[k] == XREF_NONE)
+                    continue;
+                if (numSections > 0 && sectionFirst[numSections - 1] + sectionLength[numSections - 1] == k) {
+                    ++sectionLength[numSections - 1];
+                    continue;
+                }
+                if (numSections == sectionFirst.length) {
+                    int newFirst[] = new int[numSections * 2];
+                    System.arraycopy(sectionFirst, 0, newFirst, 0, numSections);
+                    sectionFirst = newFirst;
+                    int newLength[] = new int[numSections * 2];
+                    System.arraycopy(sectionLength, 0, newLength, 0, numSections);
+                    sectionLength = newLength;
                 }
+                sectionFirst[numSections] = k;
+                sectionLength[numSections] = 1;
+                ++numSections;
             }
-            sections.add(new Integer(first));
-            sections.add(new Integer(len));
             if (writer.isFullCompression()) {
-                int mid = 4;
-                int mask = 0xff000000;
+                int mid = 8;
+                long mask = 0xff00000000000000L;
                 for (; mid > 1; --mid) {
                     if ((mask & position) != 0)
                         break;
@@ -469,9 +581,9 @@ public class PdfWriter extends DocWriter implements
                 }
                 ByteBuffer buf = new ByteBuffer();
 
-                for (Iterator i = xrefs.iterator(); i.hasNext(); ) {
-                    entry = (PdfCrossReference) i.next();
-                    entry.toPdf(mid, buf);
+                for (int k = 0; k < xrefSize; ++k) {
+                    if (xrefType[k] != XREF_NONE)
+                        writeXref(k, mid, buf);
                 }
                 PdfStream xr = new PdfStream(buf.toByteArray());
                 buf = null;
@@ -488,8 +600,10 @@ public class PdfWriter extends DocWriter implements
                 xr.put(PdfName.W, new PdfArray(new int[]{1, mid, 2}));
                 xr.put(PdfName.TYPE, PdfName.XREF);
                 PdfArray idx = new PdfArray();
-                for (int k = 0; k < sections.size(); ++k)
-                    idx.add(new PdfNumber(((Integer)sections.get(k)).intValue()));
+                for (int k = 0; k < numSections; ++k) {
+                    idx.add(new PdfNumber(sectionFirst[k]));
+                    idx.add(new PdfNumber(sectionLength[k]));
+                }
                 xr.put(PdfName.INDEX, idx);
                 if (prevxref > 0)
                     xr.put(PdfName.PREV, new PdfNumber(prevxref));
@@ -501,18 +615,16 @@ public class PdfWriter extends DocWriter implements
             }
             else {
                 os.write(getISOBytes("xref\n"));
-                Iterator i = xrefs.iterator();
-                for (int k = 0; k < sections.size(); k += 2) {
-                    first = ((Integer)sections.get(k)).intValue();
-                    len = ((Integer)sections.get(k + 1)).intValue();
+                byte entry[] = new byte[20];
+                for (int k = 0; k < numSections; ++k) {
+                    int first = sectionFirst[k];
+                    int len = sectionLength[k];
                     os.write(getISOBytes(String.valueOf(first)));
                     os.write(getISOBytes(" "));
                     os.write(getISOBytes(String.valueOf(len)));
                     os.write('\n');
-                    while (len-- > 0) {
-                        entry = (PdfCrossReference) i.next();
-                        entry.toPdf(os);
-                    }
+                    for (int n = first; n < first + len; ++n)
+                        writeXref(n, entry, os);
                 }
             }
         }
@@ -529,7 +641,7 @@ public class PdfWriter extends DocWriter implements
 
         // membervariables
 
-        int offset;
+        long offset;
 
         // constructors
 
@@ -545,7 +657,7 @@ public class PdfWriter extends DocWriter implements
          * @param prevxref
          */
 
-        PdfTrailer(int size, int offset, PdfIndirectReference root, PdfIndirectReference info, PdfIndirectReference encryption, PdfObject fileID, int prevxref) {
+        PdfTrailer(int size, long offset, PdfIndirectReference root, PdfIndirectReference info, PdfIndirectReference encryption, PdfObject fileID, long prevxref) {
             this.offset = offset;
             put(PdfName.SIZE, new PdfNumber(size));
             put(PdfName.ROOT, root);
@@ -1122,7 +1234,7 @@ public class PdfWriter extends DocWriter implements
 //	Open and Close methods + method that create the PDF
 
     /** A number referring to the previous Cross-Reference Table. */
-    protected int prevxref = 0;
+    protected long prevxref = 0;
 
     /**
      * Signals that the <CODE>Document</CODE> has been opened and that
@@ -2083,6 +2195,46 @@ public class PdfWriter extends DocWriter implements
             this.compressionLevel = compressionLevel;
     }
 
+    /**
+     * The number of threads deflating the streams.
+     * @since 2.1.8
+     */
+    protected int compressionThreads = 1;
+
+    /**
+     * Returns the number of threads used to deflate the streams.
+     * @return the number of compression threads
+     * @since 2.1.8
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to deflate the page contents, the form
+     * XObjects and the object streams. With more than one thread the streams
+     * are compressed by a pool of workers and the body writes the finished
+     * objects in the order they were added. The parallel mode is not used
+     * when the document is encrypted.
+     * It must be set before opening the document.
+     * @param compressionThreads the number of threads, 1 compresses in line
+     * @since 2.1.8
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        if (open)
+            throw new RuntimeException("Compression threads must be set before opening the document.");
+        this.compressionThreads = Math.max(1, compressionThreads);
+    }
+
+    /**
+     * Tells if the streams are deflated by a pool of threads.
+     * @return <CODE>true</CODE> if the compression is done in parallel
+     * @since 2.1.8
+     */
+    public boolean isParallelCompression() {
+        return compressionThreads > 1 && crypto == null;
+    }
+
 //  [F3] adding fonts
 
     /** The fonts of this document */
@@ -2239,7 +2391,7 @@ public class PdfWriter extends DocWriter implements
      * the current size is needed.
      * @return the approximate size without fonts or templates
      */
-    public int getCurrentDocumentSize() {
+    public long getCurrentDocumentSize() {
         return body.offset() + body.size() * 20 + 0x48;
     }
 
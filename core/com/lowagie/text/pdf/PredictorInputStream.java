@@ -0,0 +1,209 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reverses the PNG and TIFF predictors as the data is read. Only one row
+ * of data is kept in memory.
+ * @since 2.1.8
+ */
+class PredictorInputStream extends FilterInputStream {
+
+    private int predictor;
+    private int bytesPerPixel;
+    private byte curr[];
+    private byte prior[];
+    private int outPtr;
+    private boolean eof;
+
+    /**
+     * @param in the stream with the predicted data
+     * @param predictor 2 for the TIFF predictor, 10 or more for the PNG predictors
+     * @param width the number of samples in a row
+     * @param colors the number of color components per sample
+     * @param bpc the bits per color component
+     */
+    PredictorInputStream(InputStream in, int predictor, int width, int colors, int bpc) {
+        super(in);
+        this.predictor = predictor;
+        bytesPerPixel = colors * bpc / 8;
+        int bytesPerRow = (colors * width * bpc + 7) / 8;
+        curr = new byte[bytesPerRow];
+        prior = new byte[bytesPerRow];
+        outPtr = bytesPerRow;
+    }
+
+    public int read() throws IOException {
+        if (outPtr >= curr.length && !nextRow())
+            return -1;
+        return curr[outPtr++] & 0xff;
+    }
+
+    public int read(byte b[], int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        int k = 0;
+        while (k < len) {
+            if (outPtr >= curr.length && !nextRow())
+                break;
+            int n = Math.min(len - k, curr.length - outPtr);
+            System.arraycopy(curr, outPtr, b, off + k, n);
+            outPtr += n;
+            k += n;
+        }
+        return k == 0 ? -1 : k;
+    }
+
+    /**
+     * Reads and decodes the next row. An incomplete last row is dropped,
+     * as done by <CODE>PdfReader.decodePredictor()</CODE>.
+     */
+    private boolean nextRow() throws IOException {
+        if (eof)
+            return false;
+        // Swap curr and prior
+        byte[] tmp = prior;
+        prior = curr;
+        curr = tmp;
+        int filter = 0;
+        if (predictor >= 10) {
+            filter = in.read();
+            if (filter < 0) {
+                eof = true;
+                return false;
+            }
+        }
+        int n = 0;
+        while (n < curr.length) {
+            int r = in.read(curr, n, curr.length - n);
+            if (r < 0) {
+                eof = true;
+                return false;
+            }
+            n += r;
+        }
+        if (predictor == 2) {
+            for (int i = bytesPerPixel; i < curr.length; i++) {
+                curr[i] += curr[i - bytesPerPixel];
+            }
+            outPtr = 0;
+            return true;
+        }
+        switch (filter) {
+            case 0: //PNG_FILTER_NONE
+                break;
+            case 1: //PNG_FILTER_SUB
+                for (int i = bytesPerPixel; i < curr.length; i++) {
+                    curr[i] += curr[i - bytesPerPixel];
+                }
+                break;
+            case 2: //PNG_FILTER_UP
+                for (int i = 0; i < curr.length; i++) {
+                    curr[i] += prior[i];
+                }
+                break;
+            case 3: //PNG_FILTER_AVERAGE
+                for (int i = 0; i < bytesPerPixel; i++) {
+                    curr[i] += prior[i] / 2;
+                }
+                for (int i = bytesPerPixel; i < curr.length; i++) {
+                    curr[i] += ((curr[i - bytesPerPixel] & 0xff) + (prior[i] & 0xff))/2;
+                }
+                break;
+            case 4: //PNG_FILTER_PAETH
+                for (int i = 0; i < bytesPerPixel; i++) {
+                    curr[i] += prior[i];
+                }
+                for (int i = bytesPerPixel; i < curr.length; i++) {
+                    int a = curr[i - bytesPerPixel] & 0xff;
+                    int b = prior[i] & 0xff;
+                    int c = prior[i - bytesPerPixel] & 0xff;
+
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+
+                    int ret;
+
+                    if ((pa <= pb) && (pa <= pc)) {
+                        ret = a;
+                    } else if (pb <= pc) {
+                        ret = b;
+                    } else {
+                        ret = c;
+                    }
+                    curr[i] += (byte)(ret);
+                }
+                break;
+            default:
+                // Error -- unknown filter type
+                throw new IOException("PNG filter unknown.");
+        }
+        outPtr = 0;
+        return true;
+    }
+
+    public long skip(long n) throws IOException {
+        long k = 0;
+        while (k < n && read() >= 0)
+            ++k;
+        return k;
+    }
+
+    public int available() throws IOException {
+        return curr.length - outPtr;
+    }
+
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.lowagie.text.DocumentException;
+
+/**
+ * A form template prepared to be filled many times, possibly from several
+ * threads at the same time.
+ * <P>
+ * The template is parsed once, in partial mode. Each filled copy is opened
+ * from the parsed cross-reference table and only reads the objects it needs,
+ * usually the form fields, their widgets and the default resources. The copy
+ * is written in append mode: the bytes of the template are written as they
+ * are, followed by the objects that were changed. A typical use is:
+ * <pre>
+ * PreparedForm form = new PreparedForm(templateBytes);
+ * // in any thread
+ * PdfStamper stamper = form.createStamper(out);
+ * AcroFields fields = stamper.getAcroFields();
+ * fields.setField("name", name);
+ * stamper.close();
+ * </pre>
+ * The appearances of the fields are kept in an {@link AppearanceCache}
+ * shared by the copies, a value already seen in another copy is not laid
+ * out again.
+ * <P>
+ * A template that could only be read after its cross-reference table was
+ * rebuilt can't be appended to; its copies are written in full.
+ * @since 2.1.8
+ */
+public class PreparedForm {
+
+    private final byte template[];
+    /** The template opened in partial mode; it's never changed. */
+    private final PdfReader reader;
+    /** The appearances of the fields, shared by the copies. */
+    private final AppearanceCache appearanceCache = new AppearanceCache();
+
+    /**
+     * Prepares a template.
+     * @param template the template document
+     * @throws IOException on error
+     */
+    public PreparedForm(byte template[]) throws IOException {
+        this(template, null);
+    }
+
+    /**
+     * Prepares an encrypted template.
+     * @param template the template document
+     * @param ownerPassword the owner password
+     * @throws IOException on error
+     */
+    public PreparedForm(byte template[], byte ownerPassword[]) throws IOException {
+        this.template = template;
+        reader = new PdfReader(new RandomAccessFileOrArray(template), ownerPassword);
+        reader.close();
+    }
+
+    /**
+     * Gets the template.
+     * @return the template document; it must not be changed
+     */
+    public byte[] getTemplate() {
+        return template;
+    }
+
+    /**
+     * Gets the cache of the appearances of the fields, shared by all the
+     * copies of the template.
+     * @return the cache of the appearances
+     */
+    public AppearanceCache getAppearanceCache() {
+        return appearanceCache;
+    }
+
+    /**
+     * Opens a new copy of the template in partial mode.
+     * @return the copy
+     * @throws IOException on error
+     */
+    public PdfReader createReader() throws IOException {
+        return new PdfReader(reader, new RandomAccessFileOrArray(template));
+    }
+
+    /**
+     * Creates a stamper to fill a new copy of the template. The copy is
+     * written in append mode unless the template was damaged. The fields
+     * use the cache of the appearances of this template.
+     * @param os the stream to write the filled copy to
+     * @return the stamper
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public PdfStamper createStamper(OutputStream os) throws IOException, DocumentException {
+        PdfReader copy = createReader();
+        PdfStamper stamper = new PdfStamper(copy, os, '\0', !copy.isRebuilt());
+        stamper.getAcroFields().setAppearanceCache(appearanceCache);
+        return stamper;
+    }
+
+    /**
+     * Fills a new copy of the template with the values of some fields.
+     * The fields that don't exist in the template are ignored.
+     * @param values the values, as <CODE>String</CODE>s, by field name
+     * @param os the stream to write the filled copy to; it's not closed
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public void fill(Map values, OutputStream os) throws IOException, DocumentException {
+        PdfStamper stamper = createStamper(os);
+        stamper.getWriter().setCloseStream(false);
+        AcroFields fields = stamper.getAcroFields();
+        for (Iterator it = values.entrySet().iterator(); it.hasNext();) {
+            Map.Entry entry = (Map.Entry)it.next();
+            fields.setField((String)entry.getKey(), (String)entry.getValue());
+        }
+        stamper.close();
+    }
+}
@@ -56,11 +56,15 @@ import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 /** An implementation of a RandomAccessFile for input only
  * that accepts a file or a byte array as data source.
  *
@@ -253,9 +257,9 @@ public class RandomAccessFileOrArray implements DataInput {
                 adj = 1;
             }
         }
-        int pos;
-        int len;
-        int newpos;
+        long pos;
+        long len;
+        long newpos;
         
         pos = getFilePointer();
         len = length();
@@ -266,7 +270,7 @@ public class RandomAccessFileOrArray implements DataInput {
         seek(newpos);
         
         /* return the actual number of bytes skipped */
-        return newpos - pos + adj;
+        return (int)(newpos - pos) + adj;
     }
     
     public void reOpen() throws IOException {
@@ -305,16 +309,20 @@ public class RandomAccessFileOrArray implements DataInput {
         }
     }
     
-    public int length() throws IOException {
+    public long length() throws IOException {
         if (arrayIn == null) {
             insureOpen();
-            return (int)(plainRandomAccess ? trf.length() : rf.length()) - startOffset;
+            return (plainRandomAccess ? trf.length() : rf.length()) - startOffset;
         }
         else
             return arrayIn.length - startOffset;
     }
     
     public void seek(int pos) throws IOException {
+        seek((long)pos);
+    }
+    
+    public void seek(long pos) throws IOException {
         pos += startOffset;
         isBack = false;
         if (arrayIn == null) {
@@ -325,18 +333,14 @@ public class RandomAccessFileOrArray implements DataInput {
                 rf.seek(pos);
         }
         else
-            arrayInPtr = pos;
-    }
-    
-    public void seek(long pos) throws IOException {
-        seek((int)pos);
+            arrayInPtr = (int)pos;
     }
     
-    public int getFilePointer() throws IOException {
+    public long getFilePointer() throws IOException {
         insureOpen();
         int n = isBack ? 1 : 0;
         if (arrayIn == null) {
-            return (int)(plainRandomAccess ? trf.getFilePointer() : rf.getFilePointer()) - n - startOffset;
+            return (plainRandomAccess ? trf.getFilePointer() : rf.getFilePointer()) - n - startOffset;
         }
         else
             return arrayInPtr - n - startOffset;
@@ -593,7 +597,7 @@ public class RandomAccessFileOrArray implements DataInput {
                     break;
                 case '\r':
                     eol = true;
-                    int cur = getFilePointer();
+                    long cur = getFilePointer();
                     if ((read()) != '\n') {
                         seek(cur);
                     }
@@ -644,4 +648,40 @@ public class RandomAccessFileOrArray implements DataInput {
     	}
     	return java.nio.ByteBuffer.wrap(arrayIn);
     }
+
+    /**
+     * Copies a range of bytes to an <CODE>OutputStream</CODE>. When the data
+     * comes from a file the bytes are transferred by the file channel and never
+     * read as a whole into memory; if the destination is also a file they
+     * don't go through the heap at all. The file pointer is not changed.
+     * @param pos the position of the first byte
+     * @param length the number of bytes to copy
+     * @param os the destination
+     * @throws IOException on error
+     * @since 2.1.8
+     */
+    public void copyTo(long pos, long length, OutputStream os) throws IOException {
+        if (length <= 0)
+            return;
+        pos += startOffset;
+        if (arrayIn != null) {
+            os.write(arrayIn, (int)pos, (int)length);
+            return;
+        }
+        insureOpen();
+        FileChannel channel = plainRandomAccess ? trf.getChannel() : rf.getChannel();
+        WritableByteChannel out;
+        if (os instanceof FileOutputStream)
+            out = ((FileOutputStream)os).getChannel();
+        else
+            out = Channels.newChannel(os);
+        long position = pos;
+        long end = position + length;
+        while (position < end) {
+            long n = channel.transferTo(position, end - position, out);
+            if (n <= 0)
+                throw new EOFException();
+            position += n;
+        }
+    }
 }
@@ -558,7 +558,7 @@ class TrueTypeFont extends BaseFont {
             int length = rf.readUnsignedShort();
             int offset = rf.readUnsignedShort();
             if (nameID == id) {
-                int pos = rf.getFilePointer();
+                int pos = (int)rf.getFilePointer();
                 rf.seek(table_location[0] + startOfStorage + offset);
                 String name;
                 if (platformID == 0 || platformID == 3 || (platformID == 2 && platformEncodingID == 1)){
@@ -598,7 +598,7 @@ class TrueTypeFont extends BaseFont {
             int nameID = rf.readUnsignedShort();
             int length = rf.readUnsignedShort();
             int offset = rf.readUnsignedShort();
-            int pos = rf.getFilePointer();
+            int pos = (int)rf.getFilePointer();
             rf.seek(table_location[0] + startOfStorage + offset);
             String name;
             if (platformID == 0 || platformID == 3 || (platformID == 2 && platformEncodingID == 1)){
@@ -636,7 +636,7 @@ class TrueTypeFont extends BaseFont {
         int resourcesLength = rf.readInt();
         int mapLength = rf.readInt();
 
-        int fileLength = rf.length();
+        int fileLength = (int)rf.length();
         if (resourcesOffset < 0 || resourcesLength < 0 || mapOffset < 0 || mapLength < 0
                 || resourcesOffset + resourcesLength > fileLength || mapOffset + mapLength > fileLength) {
             throw new DocumentException(fileName + " is not a valid DFONT file.");
@@ -1280,7 +1280,7 @@ class TrueTypeFont extends BaseFont {
         try {
             rf2 = new RandomAccessFileOrArray(rf);
             rf2.reOpen();
-            byte b[] = new byte[rf2.length()];
+            byte b[] = new byte[(int)rf2.length()];
             rf2.readFully(b);
             return b;
         } 
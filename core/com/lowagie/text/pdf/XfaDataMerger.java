@@ -0,0 +1,1185 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import com.lowagie.text.xml.simpleparser.EntitiesToUnicode;
+import com.lowagie.text.xml.simpleparser.SimpleXMLParser;
+
+/**
+ * Fills the data of a XFA form without building the DOM of the XFA.
+ * <P>
+ * <CODE>XfaForm</CODE> parses all the packets of the XFA, template included,
+ * and serializes them again when the form is saved. This class only reads
+ * the <CODE>datasets</CODE> packet, twice, as a stream: once to index the
+ * names of the data values and once, when the form is saved, to copy it with
+ * the new values. The other packets are not read at all; when the XFA is a
+ * single stream they're copied as they are. Only the values that were set
+ * are changed, the rest of the data is copied byte for byte. A typical use is:
+ * <pre>
+ * PdfReader reader = new PdfReader(form);
+ * PdfStamper stamper = new PdfStamper(reader, out);
+ * XfaDataMerger merger = new XfaDataMerger(reader);
+ * merger.mergeXfaData(new FileInputStream(data));
+ * merger.setField("name", "value");
+ * merger.setXfa(stamper);
+ * stamper.close();
+ * </pre>
+ * Only the XFA data is changed; the "classic" fields of the form are left
+ * as they are, and <CODE>AcroFields</CODE> should not be used to change the
+ * same form. The data must be encoded in UTF-8, as required by XDP.
+ * @since 2.1.8
+ */
+public class XfaDataMerger {
+
+    private static final int INDEX = 0;
+    private static final int COLLECT = 1;
+    private static final int REWRITE = 2;
+
+    private final PdfReader reader;
+    private boolean xfaPresent;
+    private DatasetsIndex datasetsSom;
+    /** The new values, by element. */
+    private final HashMap values = new HashMap();
+    /**
+     * The values that don't exist in the datasets, as lists of elements, by
+     * the existing group where they'll be inserted.
+     */
+    private final HashMap inserts = new HashMap();
+    private boolean changed;
+
+    /**
+     * Reads the names of the data of a XFA form.
+     * @param reader the reader of the form
+     * @throws IOException on error
+     */
+    public XfaDataMerger(PdfReader reader) throws IOException {
+        this.reader = reader;
+        PdfObject xfa = XfaForm.getXfaObject(reader);
+        if (xfa == null)
+            return;
+        xfaPresent = true;
+        datasetsSom = new DatasetsIndex();
+        PRStream stream = getDatasetsStream(xfa);
+        if (stream == null)
+            return;
+        InputStream in = PdfReader.getStreamInputStream(stream);
+        try {
+            new DataScanner(INDEX, false, in, null).scan();
+        }
+        finally {
+            in.close();
+        }
+        datasetsSom.datasetsElements = datasetsSom.elements;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if it is a XFA form.
+     * @return <CODE>true</CODE> if it is a XFA form
+     */
+    public boolean isXfaPresent() {
+        return xfaPresent;
+    }
+
+    /**
+     * Checks if a value was set.
+     * @return <CODE>true</CODE> if a value was set and not yet written
+     */
+    public boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * Gets the names of the data values.
+     * @return the names of the data values or <CODE>null</CODE> if it's not
+     * a XFA form
+     */
+    public DatasetsIndex getDatasetsSom() {
+        return datasetsSom;
+    }
+
+    /**
+     * Finds the complete SOM name contained in the datasets section from a
+     * possibly partial name.
+     * @param name the complete or partial name
+     * @return the complete name or <CODE>null</CODE> if not found
+     */
+    public String findDatasetsName(String name) {
+        if (datasetsSom == null || name == null)
+            return null;
+        int value = datasetsSom.find(XfaForm.Xml2Som.splitParts(XfaForm.Xml2Som.getShortName(name)));
+        return value < 0 ? null : datasetsSom.getElementName(value);
+    }
+
+    /**
+     * Sets the value of a data node. If the node doesn't exist it's inserted,
+     * with the groups it needs, in the deepest group that exists.
+     * @param name the complete or partial SOM name
+     * @param value the value
+     * @return <CODE>true</CODE> if the value was set, <CODE>false</CODE> if
+     * there are no datasets or the name can't be inserted
+     */
+    public boolean setField(String name, String value) {
+        if (datasetsSom == null || !datasetsSom.datasets)
+            return false;
+        XfaForm.Stack2 parts = XfaForm.Xml2Som.splitParts(XfaForm.Xml2Som.getShortName(name));
+        int elem = datasetsSom.find(parts);
+        if (elem < 0) {
+            elem = datasetsSom.insert(parts);
+            if (elem < 0)
+                return false;
+            Integer group = new Integer(datasetsSom.getGroup(elem));
+            ArrayList list = (ArrayList)inserts.get(group);
+            if (list == null) {
+                list = new ArrayList();
+                inserts.put(group, list);
+            }
+            list.add(new Integer(elem));
+        }
+        values.put(new Integer(elem), value == null ? "" : value);
+        changed = true;
+        return true;
+    }
+
+    /**
+     * Merges the data of a XML document. The document may be a full XDP, a
+     * <CODE>datasets</CODE> element or the data alone, in which case the names
+     * start at the children of the root element. The document is read as a
+     * stream.
+     * @param data the XML document; it's not closed
+     * @throws IOException on error
+     */
+    public void mergeXfaData(InputStream data) throws IOException {
+        new DataScanner(COLLECT, true, data, null).scan();
+    }
+
+    /**
+     * Writes the new data to the form. The new <CODE>datasets</CODE> packet
+     * replaces the old one, the other packets are kept. It should be called
+     * once, before closing the stamper.
+     * @param stamper the stamper of the reader of this instance
+     * @throws IOException on error
+     */
+    public void setXfa(PdfStamper stamper) throws IOException {
+        if (!changed)
+            return;
+        PdfStamperImp writer = (PdfStamperImp)stamper.getWriter();
+        PdfDictionary af = (PdfDictionary)PdfReader.getPdfObject(reader.getCatalog().get(PdfName.ACROFORM));
+        PdfObject xfa = XfaForm.getXfaObject(reader);
+        if (xfa.isArray()) {
+            PdfArray ar = (PdfArray)xfa;
+            for (int k = 0; k < ar.size(); k += 2) {
+                PdfString s = ar.getAsString(k);
+                if (s != null && "datasets".equals(s.toString())) {
+                    PdfStream str = rewrite((PRStream)ar.getDirectObject(k + 1), writer.getCompressionLevel());
+                    reader.killXref(ar.getPdfObject(k + 1));
+                    ar.set(k + 1, writer.addToBody(str).getIndirectReference());
+                    af.put(PdfName.XFA, new PdfArray(ar));
+                    break;
+                }
+            }
+        }
+        else {
+            PdfStream str = rewrite((PRStream)xfa, writer.getCompressionLevel());
+            reader.killXref(af.get(PdfName.XFA));
+            af.put(PdfName.XFA, writer.addToBody(str).getIndirectReference());
+        }
+        PdfObject afRef = reader.getCatalog().get(PdfName.ACROFORM);
+        writer.markUsed(afRef.isIndirect() ? afRef : reader.getCatalog());
+        changed = false;
+    }
+
+    /**
+     * Gets the stream with the datasets: the <CODE>datasets</CODE> packet
+     * or the whole XFA if it's a single stream.
+     */
+    private static PRStream getDatasetsStream(PdfObject xfa) {
+        if (xfa.isArray()) {
+            PdfArray ar = (PdfArray)xfa;
+            for (int k = 0; k < ar.size(); k += 2) {
+                PdfString s = ar.getAsString(k);
+                if (s != null && "datasets".equals(s.toString())) {
+                    PdfObject ob = ar.getDirectObject(k + 1);
+                    return ob instanceof PRStream ? (PRStream)ob : null;
+                }
+            }
+            return null;
+        }
+        return xfa instanceof PRStream ? (PRStream)xfa : null;
+    }
+
+    private PdfStream rewrite(PRStream stream, int compressionLevel) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        Deflater deflater = null;
+        OutputStream zip = bout;
+        if (compressionLevel != PdfStream.NO_COMPRESSION) {
+            deflater = new Deflater(compressionLevel);
+            zip = new DeflaterOutputStream(bout, deflater);
+        }
+        OutputStream out = new BufferedOutputStream(zip, 8192);
+        InputStream in = PdfReader.getStreamInputStream(stream);
+        try {
+            new DataScanner(REWRITE, false, in, out).scan();
+        }
+        finally {
+            in.close();
+        }
+        out.close();
+        if (deflater != null)
+            deflater.end();
+        PdfStream str = new PdfStream(bout.toByteArray());
+        if (deflater != null)
+            str.put(PdfName.FILTER, PdfName.FLATEDECODE);
+        return str;
+    }
+
+    /**
+     * The names of the data values of the datasets section. It does the same
+     * searches as <CODE>XfaForm.Xml2SomDatasets</CODE>, without the DOM and
+     * without keeping the names: each element of the data is kept as its
+     * parent and its part of the name, and the names are searched from the
+     * last part in a tree where a branch followed by a single element is
+     * kept as that element.
+     */
+    public static class DatasetsIndex {
+        /** The ids of the element names, already escaped. */
+        private final HashMap baseIds = new HashMap();
+        private final ArrayList bases = new ArrayList();
+        /** The ids of the parts, an element name with an index. */
+        private final LongIntMap partIds = new LongIntMap();
+        private int partBase[] = new int[64];
+        private int partIndex[] = new int[64];
+        private int parts;
+        /** The parent and the part of each element; 0 is the data element. */
+        private int parent[] = new int[256];
+        private int part[] = new int[256];
+        private int elements = 1;
+        /** The elements read from the datasets, the others were inserted. */
+        private int datasetsElements;
+        /** The data values, in the order they appear. */
+        private int order[] = new int[256];
+        private int size;
+        private final NameTree valueTree = new NameTree();
+        private final NameTree groupTree = new NameTree();
+        /** <CODE>true</CODE> if there's a datasets section. */
+        private boolean datasets;
+
+        DatasetsIndex() {
+            parent[0] = -1;
+        }
+
+        /**
+         * Gets the number of data values.
+         * @return the number of data values
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Gets the full name of a data value.
+         * @param idx the position of the value, in the order it appears in
+         * the data
+         * @return the full name
+         */
+        public String getName(int idx) {
+            return getElementName(order[idx]);
+        }
+
+        String getElementName(int elem) {
+            StringBuffer sb = new StringBuffer();
+            for (; elem > 0; elem = parent[elem]) {
+                if (sb.length() > 0)
+                    sb.insert(0, '.');
+                sb.insert(0, (String)bases.get(partBase[part[elem]]) + "[" + partIndex[part[elem]] + "]");
+            }
+            return sb.toString();
+        }
+
+        String getBase(int elem) {
+            return (String)bases.get(partBase[part[elem]]);
+        }
+
+        int getIndex(int elem) {
+            return partIndex[part[elem]];
+        }
+
+        int getParent(int elem) {
+            return parent[elem];
+        }
+
+        /**
+         * Gets the group where an inserted element will be written.
+         * @param elem the inserted element
+         * @return the deepest ancestor read from the datasets
+         */
+        int getGroup(int elem) {
+            while (elem >= datasetsElements)
+                elem = parent[elem];
+            return elem;
+        }
+
+        private int getBaseId(String base, boolean create) {
+            Integer id = (Integer)baseIds.get(base);
+            if (id != null)
+                return id.intValue();
+            if (!create)
+                return -1;
+            id = new Integer(bases.size());
+            baseIds.put(base, id);
+            bases.add(base);
+            return id.intValue();
+        }
+
+        private int getPartId(int base, int index, boolean create) {
+            long key = (long)base << 32 | index;
+            int id = partIds.get(key);
+            if (id >= 0 || !create)
+                return id;
+            if (parts == partBase.length) {
+                partBase = grow(partBase);
+                partIndex = grow(partIndex);
+            }
+            partBase[parts] = base;
+            partIndex[parts] = index;
+            partIds.put(key, parts);
+            return parts++;
+        }
+
+        /**
+         * Adds an element.
+         * @param par the parent element
+         * @param base the escaped element name
+         * @param index the index of the element among the ones with the same name
+         * @return the element
+         */
+        int addElement(int par, String base, int index) {
+            if (elements == parent.length) {
+                parent = grow(parent);
+                part = grow(part);
+            }
+            parent[elements] = par;
+            part[elements] = getPartId(getBaseId(base, true), index, true);
+            return elements++;
+        }
+
+        void addValue(int elem) {
+            if (size == order.length)
+                order = grow(order);
+            order[size++] = elem;
+            valueTree.add(elem);
+        }
+
+        void addGroup(int elem) {
+            groupTree.add(elem);
+        }
+
+        /**
+         * Finds a data value from a complete or partial name.
+         * @param names the parts of the name
+         * @return the element or -1 if not found
+         */
+        int find(ArrayList names) {
+            int q[] = new int[names.size()];
+            int qbase[] = new int[q.length];
+            toParts(names, q, qbase);
+            int elem = valueTree.find(q, q.length);
+            if (elem < 0)
+                elem = valueTree.search(q, qbase);
+            return elem;
+        }
+
+        /**
+         * Inserts a data value that doesn't exist, in the deepest group that
+         * exists.
+         * @param names the parts of the full name
+         * @return the new element or -1 if a value is in the way
+         */
+        int insert(ArrayList names) {
+            int q[] = new int[names.size()];
+            int qbase[] = new int[q.length];
+            toParts(names, q, qbase);
+            int k;
+            int group = 0;
+            for (k = q.length - 1; k > 0; --k) {
+                group = groupTree.find(q, k);
+                if (group >= 0)
+                    break;
+            }
+            if (k == 0)
+                group = 0;
+            // a value can't get children
+            if (valueTree.find(q, k + 1) >= 0)
+                return -1;
+            int elem = group;
+            for (; k < q.length; ++k) {
+                String s = (String)names.get(k);
+                int idx = s.lastIndexOf('[');
+                elem = addElement(elem, s.substring(0, idx), Integer.parseInt(s.substring(idx + 1, s.length() - 1)));
+            }
+            addValue(elem);
+            return elem;
+        }
+
+        private void toParts(ArrayList names, int q[], int qbase[]) {
+            for (int k = 0; k < q.length; ++k) {
+                String s = (String)names.get(k);
+                int idx = s.lastIndexOf('[');
+                qbase[k] = getBaseId(s.substring(0, idx), false);
+                q[k] = -1;
+                if (qbase[k] >= 0) {
+                    try {
+                        q[k] = getPartId(qbase[k], Integer.parseInt(s.substring(idx + 1, s.length() - 1)), false);
+                    }
+                    catch (NumberFormatException e) {
+                        // no match
+                    }
+                }
+            }
+        }
+
+        /**
+         * Gets a part of the name of an element.
+         * @param elem the element
+         * @param fromEnd the position of the part, 0 is the last
+         * @return the part or -1 if the name is shorter
+         */
+        private int getPart(int elem, int fromEnd) {
+            for (; fromEnd > 0; --fromEnd) {
+                elem = parent[elem];
+                if (elem == 0)
+                    return -1;
+            }
+            return part[elem];
+        }
+
+        /**
+         * The names of some elements, arranged from the last part. It's the
+         * tree of <CODE>XfaForm.InverseStore</CODE> where the nodes below
+         * which there's a single element are not created.
+         */
+        private class NameTree {
+            /** The children of the nodes, by node and part. */
+            private final LongIntMap children = new LongIntMap();
+            /** The element names of the children, by node and name. */
+            private final LongIntMap childBases = new LongIntMap();
+            /** The first element added below each node. */
+            private int first[] = new int[64];
+            /** The element whose name ends at each node or -1. */
+            private int end[] = new int[64];
+            /** <CODE>true</CODE> if there's a single element below the node. */
+            private boolean single[] = new boolean[64];
+            /** The node 0 is the root. */
+            private int nodes = 1;
+
+            NameTree() {
+                end[0] = -1;
+            }
+
+            private int newNode(int elem) {
+                if (nodes == first.length) {
+                    first = grow(first);
+                    end = grow(end);
+                    boolean b[] = new boolean[single.length * 2];
+                    System.arraycopy(single, 0, b, 0, single.length);
+                    single = b;
+                }
+                first[nodes] = elem;
+                end[nodes] = -1;
+                single[nodes] = true;
+                return nodes++;
+            }
+
+            private void addChild(int node, int p, int elem) {
+                children.put((long)node << 32 | p, newNode(elem));
+                childBases.put((long)node << 32 | partBase[p], 1);
+            }
+
+            private int getChild(int node, int p) {
+                return p < 0 ? -1 : children.get((long)node << 32 | p);
+            }
+
+            void add(int elem) {
+                int node = 0;
+                for (int d = 0; ; ++d) {
+                    if (single[node]) {
+                        // the element below moves one level down
+                        single[node] = false;
+                        int other = first[node];
+                        int p = getPart(other, d);
+                        if (p < 0)
+                            end[node] = other;
+                        else
+                            addChild(node, p, other);
+                    }
+                    int p = getPart(elem, d);
+                    if (p < 0) {
+                        if (end[node] < 0)
+                            end[node] = elem;
+                        return;
+                    }
+                    int child = getChild(node, p);
+                    if (child < 0) {
+                        addChild(node, p, elem);
+                        return;
+                    }
+                    node = child;
+                }
+            }
+
+            /**
+             * Finds the element with a name.
+             * @param q the parts of the name
+             * @param n the number of parts to use
+             * @return the element or -1 if not found
+             */
+            int find(int q[], int n) {
+                int node = 0;
+                for (int d = 0; d < n; ++d) {
+                    if (single[node]) {
+                        int elem = first[node];
+                        for (; d < n; ++d) {
+                            if (getPart(elem, d) != q[n - 1 - d])
+                                return -1;
+                        }
+                        return getPart(elem, n) < 0 ? elem : -1;
+                    }
+                    node = getChild(node, q[n - 1 - d]);
+                    if (node < 0)
+                        return -1;
+                }
+                if (single[node])
+                    return getPart(first[node], n) < 0 ? first[node] : -1;
+                return end[node];
+            }
+
+            /**
+             * Searches a partial name like
+             * <CODE>XfaForm.Xml2Som.inverseSearchGlobal()</CODE>.
+             * @param q the parts of the name
+             * @param qbase the element names of the parts
+             * @return the element or -1 if not found
+             */
+            int search(int q[], int qbase[]) {
+                int n = q.length;
+                if (n == 0)
+                    return -1;
+                int node = getChild(0, q[n - 1]);
+                if (node < 0)
+                    return -1;
+                for (int d = 1; d < n; ++d) {
+                    if (single[node]) {
+                        int elem = first[node];
+                        int p = getPart(elem, d);
+                        if (p >= 0 && p == q[n - 1 - d])
+                            continue;
+                        if (p >= 0 && partBase[p] == qbase[n - 1 - d])
+                            return -1;
+                        return elem;
+                    }
+                    int child = getChild(node, q[n - 1 - d]);
+                    if (child < 0) {
+                        if (qbase[n - 1 - d] >= 0 && childBases.get((long)node << 32 | qbase[n - 1 - d]) >= 0)
+                            return -1;
+                        return first[node];
+                    }
+                    node = child;
+                }
+                return first[node];
+            }
+        }
+    }
+
+    private static int[] grow(int a[]) {
+        int b[] = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    /** A hash table of <CODE>int</CODE> values with non-negative <CODE>long</CODE> keys. */
+    private static class LongIntMap {
+        private long keys[] = new long[64];
+        private int values[] = new int[64];
+        private int count;
+
+        LongIntMap() {
+            java.util.Arrays.fill(keys, -1);
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int k = (int)((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (keys[k] != -1 && keys[k] != key)
+                k = (k + 1) & mask;
+            return k;
+        }
+
+        /**
+         * Gets a value.
+         * @param key the key
+         * @return the value or -1 if there's none
+         */
+        int get(long key) {
+            int k = slot(key);
+            return keys[k] == -1 ? -1 : values[k];
+        }
+
+        void put(long key, int value) {
+            int k = slot(key);
+            if (keys[k] == -1) {
+                if (++count * 2 > keys.length) {
+                    long oldKeys[] = keys;
+                    int oldValues[] = values;
+                    keys = new long[oldKeys.length * 2];
+                    values = new int[oldKeys.length * 2];
+                    java.util.Arrays.fill(keys, -1);
+                    for (int j = 0; j < oldKeys.length; ++j) {
+                        if (oldKeys[j] != -1) {
+                            int s = slot(oldKeys[j]);
+                            keys[s] = oldKeys[j];
+                            values[s] = oldValues[j];
+                        }
+                    }
+                    k = slot(key);
+                }
+                keys[k] = key;
+            }
+            values[k] = value;
+        }
+    }
+
+    /** An element open in the data. */
+    private static class Frame {
+        /** The element in the index, -1 if not named. */
+        int elem = -1;
+        /** The full name, when reading the data to merge; "" for the data element. */
+        String name;
+        String qname;
+        String dataNode;
+        /** Inside a value, the element isn't named. */
+        boolean ignored;
+        boolean children;
+        /** The number of children by name. */
+        HashMap counts;
+
+        int count(String s) {
+            if (counts == null)
+                return 0;
+            Integer i = (Integer)counts.get(s);
+            return i == null ? 0 : i.intValue();
+        }
+    }
+
+    /** An element to be inserted in the data. */
+    private static class NewNode {
+        final String name;
+        String value;
+        final ArrayList kids = new ArrayList();
+        final HashMap byName = new HashMap();
+
+        NewNode(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Reads XML as bytes, keeping track of the SOM names of the elements of
+     * the data. When rewriting, everything is copied as it was read but the
+     * content of the elements that get a new value.
+     */
+    private class DataScanner {
+        private final int mode;
+        /** The root may be the data element. */
+        private final boolean external;
+        private final InputStream in;
+        private final OutputStream out;
+        private final byte buf[] = new byte[8192];
+        private int bufPos;
+        private int bufLen;
+        private final ByteBuffer token = new ByteBuffer(256);
+        private final ByteBuffer textBytes = new ByteBuffer();
+        private final StringBuffer text = new StringBuffer();
+        private final ArrayList frames = new ArrayList();
+        private int depth;
+        private int datasetsDepth = -1;
+        private int dataDepth = -1;
+        private boolean dataDone;
+        /** The depth of the element whose content is being replaced. */
+        private int skipDepth = -1;
+        private String datasetsQname;
+        private String dataPrefix;
+        /** The next element of the data, in document order. */
+        private int nextElement = 1;
+
+        DataScanner(int mode, boolean external, InputStream in, OutputStream out) {
+            this.mode = mode;
+            this.external = external;
+            this.in = in;
+            this.out = out;
+        }
+
+        void scan() throws IOException {
+            while (true) {
+                if (bufPos == bufLen && !fill())
+                    break;
+                int start = bufPos;
+                while (bufPos < bufLen && buf[bufPos] != '<')
+                    ++bufPos;
+                if (bufPos > start) {
+                    if (writing())
+                        out.write(buf, start, bufPos - start);
+                    if (mode == COLLECT && dataDepth >= 0)
+                        textBytes.append(buf, start, bufPos - start);
+                }
+                if (bufPos < bufLen) {
+                    ++bufPos;
+                    markup();
+                }
+            }
+            if (depth != 0)
+                throw new IOException("Missing end tag in the XFA data.");
+        }
+
+        private boolean fill() throws IOException {
+            bufPos = 0;
+            bufLen = in.read(buf);
+            if (bufLen <= 0) {
+                bufLen = 0;
+                return false;
+            }
+            return true;
+        }
+
+        private int next() throws IOException {
+            if (bufPos == bufLen && !fill())
+                throw new IOException("Unexpected end of the XFA data.");
+            int c = buf[bufPos++] & 0xff;
+            token.append((byte)c);
+            return c;
+        }
+
+        private void until(String end) throws IOException {
+            int n = end.length();
+            while (true) {
+                next();
+                int size = token.size();
+                if (size < n)
+                    continue;
+                byte b[] = token.getBuffer();
+                int k;
+                for (k = 0; k < n && b[size - n + k] == end.charAt(k); ++k);
+                if (k == n)
+                    return;
+            }
+        }
+
+        private boolean writing() {
+            return out != null && skipDepth < 0;
+        }
+
+        private void flushText() throws IOException {
+            if (textBytes.size() > 0) {
+                text.append(EntitiesToUnicode.decodeString(textBytes.toString("UTF-8")));
+                textBytes.reset();
+            }
+        }
+
+        private void markup() throws IOException {
+            if (mode == COLLECT)
+                flushText();
+            token.reset();
+            token.append((byte)'<');
+            int c = next();
+            if (c == '?') {
+                until("?>");
+            }
+            else if (c == '!') {
+                c = next();
+                if (c == '-') {
+                    until("-->");
+                }
+                else if (c == '[') {
+                    until("]]>");
+                    if (mode == COLLECT && dataDepth >= 0)
+                        text.append(new String(token.getBuffer(), 9, token.size() - 12, "UTF-8"));
+                }
+                else {
+                    int brackets = 0;
+                    while (c != '>' || brackets > 0) {
+                        if (c == '[')
+                            ++brackets;
+                        else if (c == ']')
+                            --brackets;
+                        c = next();
+                    }
+                }
+            }
+            else if (c == '/') {
+                while (c != '>')
+                    c = next();
+                endTag();
+                return;
+            }
+            else {
+                int quote = 0;
+                while (c != '>' || quote != 0) {
+                    if (quote == 0 && (c == '"' || c == '\''))
+                        quote = c;
+                    else if (c == quote)
+                        quote = 0;
+                    c = next();
+                }
+                startTag();
+                return;
+            }
+            if (writing())
+                token.writeTo(out);
+        }
+
+        private void startTag() throws IOException {
+            byte b[] = token.getBuffer();
+            int size = token.size();
+            boolean empty = b[size - 2] == '/';
+            if (skipDepth >= 0) {
+                if (!empty)
+                    ++depth;
+                return;
+            }
+            ++depth;
+            int p = 1;
+            while (p < size && !isWhitespace(b[p]) && b[p] != '/' && b[p] != '>')
+                ++p;
+            String qname = new String(b, 1, p - 1, "UTF-8");
+            String local = getLocalName(qname);
+            Frame f = null;
+            if (dataDepth >= 0) {
+                Frame parent = (Frame)frames.get(frames.size() - 1);
+                f = new Frame();
+                f.qname = qname;
+                if (parent.ignored || "dataValue".equals(parent.dataNode)) {
+                    f.ignored = true;
+                }
+                else {
+                    parent.children = true;
+                    String s = XfaForm.Xml2Som.escapeSom(local);
+                    int i = parent.count(s);
+                    if (parent.counts == null)
+                        parent.counts = new HashMap();
+                    parent.counts.put(s, new Integer(i + 1));
+                    f.dataNode = getDataNode(p);
+                    if (mode == COLLECT) {
+                        String part = s + "[" + i + "]";
+                        f.name = parent.name.length() == 0 ? part : parent.name + "." + part;
+                        text.setLength(0);
+                    }
+                    else if (mode == INDEX)
+                        f.elem = datasetsSom.addElement(parent.elem, s, i);
+                    else
+                        f.elem = nextElement++;
+                }
+                frames.add(f);
+            }
+            else if (!dataDone) {
+                if (datasetsDepth >= 0 && depth == datasetsDepth + 1 && local.equals("data")
+                    || datasetsDepth < 0 && external && depth == 1 && !local.equals("xdp") && !local.equals("datasets")) {
+                    dataDepth = depth;
+                    f = new Frame();
+                    f.elem = 0;
+                    f.name = "";
+                    f.qname = qname;
+                    frames.add(f);
+                }
+                else if (datasetsDepth < 0 && local.equals("datasets")) {
+                    datasetsDepth = depth;
+                    datasetsQname = qname;
+                    dataPrefix = getPrefix(p, XfaForm.XFA_DATA_SCHEMA);
+                    if (mode == INDEX)
+                        datasetsSom.datasets = true;
+                }
+            }
+            if (mode == REWRITE && f != null && !f.ignored) {
+                Integer elem = new Integer(f.elem);
+                String value = f.elem == 0 ? null : (String)values.get(elem);
+                if (value != null) {
+                    out.write(b, 0, empty ? size - 2 : size - 1);
+                    out.write('>');
+                    writeText(value);
+                    if (empty)
+                        endElement(true, false);
+                    else
+                        skipDepth = depth;
+                    return;
+                }
+                if (empty && inserts.containsKey(elem)) {
+                    out.write(b, 0, size - 2);
+                    out.write('>');
+                    endElement(true, false);
+                    return;
+                }
+            }
+            if (writing())
+                token.writeTo(out);
+            if (empty)
+                endElement(false, false);
+        }
+
+        private void endTag() throws IOException {
+            if (skipDepth >= 0) {
+                if (depth > skipDepth) {
+                    --depth;
+                    return;
+                }
+                skipDepth = -1;
+            }
+            endElement(false, true);
+        }
+
+        /**
+         * Ends the current element.
+         * @param close write an end tag
+         * @param copy copy the end tag that was read
+         */
+        private void endElement(boolean close, boolean copy) throws IOException {
+            if (dataDepth >= 0) {
+                Frame f = (Frame)frames.remove(frames.size() - 1);
+                if (!f.ignored) {
+                    boolean group = "dataGroup".equals(f.dataNode) || !"dataValue".equals(f.dataNode) && f.children;
+                    if (mode == REWRITE) {
+                        writeInserts(f);
+                    }
+                    else if (f.elem != 0) {
+                        if (mode == INDEX) {
+                            if (group)
+                                datasetsSom.addGroup(f.elem);
+                            else
+                                datasetsSom.addValue(f.elem);
+                        }
+                        else if (!group) {
+                            setField(f.name, text.toString());
+                            text.setLength(0);
+                        }
+                    }
+                }
+                if (depth == dataDepth) {
+                    dataDepth = -1;
+                    dataDone = true;
+                }
+                if (close)
+                    writeEndTag(f.qname);
+            }
+            else if (depth == datasetsDepth && !dataDone) {
+                // there's no data element, it's created if there's something to insert
+                dataDone = true;
+                if (mode == REWRITE && inserts.containsKey(new Integer(0))) {
+                    int idx = datasetsQname.indexOf(':');
+                    String dataQname = (idx < 0 ? "" : datasetsQname.substring(0, idx + 1)) + "data";
+                    out.write(('<' + dataQname + '>').getBytes("UTF-8"));
+                    Frame f = new Frame();
+                    f.elem = 0;
+                    writeInserts(f);
+                    writeEndTag(dataQname);
+                }
+            }
+            --depth;
+            if (copy && writing())
+                token.writeTo(out);
+        }
+
+        private void writeEndTag(String qname) throws IOException {
+            out.write(("</" + qname + '>').getBytes("UTF-8"));
+        }
+
+        private void writeText(String value) throws IOException {
+            out.write(SimpleXMLParser.escapeXML(value, false).getBytes("UTF-8"));
+        }
+
+        /**
+         * Writes the new elements of a group.
+         * @param f the group
+         */
+        private void writeInserts(Frame f) throws IOException {
+            ArrayList elems = (ArrayList)inserts.get(new Integer(f.elem));
+            if (elems == null)
+                return;
+            NewNode root = new NewNode(null);
+            ArrayList path = new ArrayList();
+            for (int k = 0; k < elems.size(); ++k) {
+                Integer elem = (Integer)elems.get(k);
+                path.clear();
+                for (int e = elem.intValue(); e != f.elem; e = datasetsSom.getParent(e))
+                    path.add(new Integer(e));
+                NewNode node = root;
+                for (int j = path.size() - 1; j >= 0; --j) {
+                    int e = ((Integer)path.get(j)).intValue();
+                    String s = datasetsSom.getBase(e);
+                    int n = datasetsSom.getIndex(e);
+                    int existing = node == root ? f.count(s) : 0;
+                    ArrayList created = (ArrayList)node.byName.get(s);
+                    if (created == null) {
+                        created = new ArrayList();
+                        node.byName.put(s, created);
+                    }
+                    while (existing + created.size() <= n) {
+                        NewNode kid = new NewNode(XfaForm.Xml2Som.unescapeSom(s));
+                        created.add(kid);
+                        node.kids.add(kid);
+                    }
+                    node = (NewNode)created.get(n - existing);
+                }
+                node.value = (String)values.get(elem);
+            }
+            writeNewNodes(root);
+        }
+
+        private void writeNewNodes(NewNode node) throws IOException {
+            for (int k = 0; k < node.kids.size(); ++k) {
+                NewNode kid = (NewNode)node.kids.get(k);
+                StringBuffer sb = new StringBuffer();
+                sb.append('<').append(kid.name);
+                if (kid.value == null) {
+                    if (dataPrefix == null)
+                        sb.append(" xmlns:xfa=\"").append(XfaForm.XFA_DATA_SCHEMA).append("\" xfa");
+                    else
+                        sb.append(' ').append(dataPrefix);
+                    sb.append(":dataNode=\"dataGroup\"");
+                }
+                if (kid.value == null && kid.kids.isEmpty()) {
+                    sb.append("/>");
+                    out.write(sb.toString().getBytes("UTF-8"));
+                    continue;
+                }
+                sb.append('>');
+                out.write(sb.toString().getBytes("UTF-8"));
+                if (kid.value != null)
+                    writeText(kid.value);
+                writeNewNodes(kid);
+                writeEndTag(kid.name);
+            }
+        }
+
+        /**
+         * Gets the value of the <CODE>dataNode</CODE> attribute of the
+         * start tag in <CODE>token</CODE>.
+         * @param p the position after the tag name
+         */
+        private String getDataNode(int p) throws IOException {
+            ArrayList attrs = getAttributes(p);
+            for (int k = 0; k < attrs.size(); k += 2) {
+                String key = (String)attrs.get(k);
+                if (key.endsWith(":dataNode"))
+                    return (String)attrs.get(k + 1);
+            }
+            return null;
+        }
+
+        /**
+         * Gets the prefix declared for a namespace in the start tag in
+         * <CODE>token</CODE>.
+         * @param p the position after the tag name
+         * @param uri the namespace
+         */
+        private String getPrefix(int p, String uri) throws IOException {
+            ArrayList attrs = getAttributes(p);
+            for (int k = 0; k < attrs.size(); k += 2) {
+                String key = (String)attrs.get(k);
+                if (key.startsWith("xmlns:") && uri.equals(attrs.get(k + 1)))
+                    return key.substring(6);
+            }
+            return null;
+        }
+
+        /**
+         * Gets the attributes of the start tag in <CODE>token</CODE>.
+         * @param p the position after the tag name
+         * @return the names and the values, one after the other
+         */
+        private ArrayList getAttributes(int p) throws IOException {
+            ArrayList attrs = new ArrayList();
+            byte b[] = token.getBuffer();
+            int size = token.size();
+            while (true) {
+                while (p < size && isWhitespace(b[p]))
+                    ++p;
+                int start = p;
+                while (p < size && b[p] != '=' && !isWhitespace(b[p]) && b[p] != '/' && b[p] != '>')
+                    ++p;
+                if (p == start)
+                    return attrs;
+                String key = new String(b, start, p - start, "UTF-8");
+                while (p < size && b[p] != '"' && b[p] != '\'')
+                    ++p;
+                if (p == size)
+                    return attrs;
+                byte quote = b[p++];
+                start = p;
+                while (p < size && b[p] != quote)
+                    ++p;
+                attrs.add(key);
+                attrs.add(EntitiesToUnicode.decodeString(new String(b, start, p - start, "UTF-8")));
+                ++p;
+            }
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static String getLocalName(String qname) {
+        int idx = qname.indexOf(':');
+        return idx < 0 ? qname : qname.substring(idx + 1);
+    }
+}
@@ -408,6 +408,34 @@ public class XfaForm {
     public static class InverseStore {
         protected ArrayList part = new ArrayList();
         protected ArrayList follow = new ArrayList();
+        /**
+         * The position of each part, for the stores with many parts, like
+         * the one above a repeated subform.
+         * @since 2.1.8
+         */
+        private HashMap partIndex;
+        /** The number of parts in <CODE>partIndex</CODE>. */
+        private int indexed;
+        
+        /**
+         * Gets the position of a part.
+         * @param name the part
+         * @return the position of the part or -1 if not found
+         * @since 2.1.8
+         */
+        public int indexOf(String name) {
+            if (part.size() < 16)
+                return part.indexOf(name);
+            if (partIndex == null)
+                partIndex = new HashMap();
+            for (; indexed < part.size(); ++indexed) {
+                Object p = part.get(indexed);
+                if (!partIndex.containsKey(p))
+                    partIndex.put(p, new Integer(indexed));
+            }
+            Integer idx = (Integer)partIndex.get(name);
+            return idx == null ? -1 : idx.intValue();
+        }
         
         /**
          * Gets the full name by traversing the hierarchy using only the
@@ -618,7 +646,7 @@ public class XfaForm {
             for (int k = stack.size() - 2; k >= 0; --k) {
                 last = (String)stack.get(k);
                 InverseStore store2;
-                int idx = store.part.indexOf(last);
+                int idx = store.indexOf(last);
                 if (idx < 0) {
                     store.part.add(last);
                     store2 = new InverseStore();
@@ -645,7 +673,7 @@ public class XfaForm {
                 return null;
             for (int k = parts.size() - 2; k >= 0; --k) {
                 String part = (String)parts.get(k);
-                int idx = store.part.indexOf(part);
+                int idx = store.indexOf(part);
                 if (idx < 0) {
                     if (store.isSimilar(part))
                         return null;
@@ -0,0 +1,235 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+/**
+ * Scans a section of a damaged PDF file looking for the objects
+ * ("N G obj" at the start of a line), the "trailer" keywords and the
+ * "/ObjStm" and "/XRef" names. It's used by <CODE>PdfReader.rebuildXref()</CODE>;
+ * several sections of the same file can be scanned at the same time.
+ * @since 2.1.8
+ */
+class XrefScanner implements Callable {
+
+    private static final int BLOCK_SIZE = 1 << 20;
+    /** The bytes read after a block to check the matches that cross it. */
+    private static final int OVERLAP = 128;
+    /** The length of the line checked for an object start, as in <CODE>rebuildXref()</CODE>. */
+    private static final int LINE_SIZE = 64;
+    private static final byte TRAILER[] = PdfEncodings.convertToBytes("trailer", null);
+    private static final byte OBJSTM[] = PdfEncodings.convertToBytes("/ObjStm", null);
+    private static final byte XREF[] = PdfEncodings.convertToBytes("/XRef", null);
+    private static final byte OBJ[] = PdfEncodings.convertToBytes("obj", null);
+
+    private RandomAccessFileOrArray file;
+    private long start;
+    private long end;
+
+    /** The positions, numbers and generations of the objects found. */
+    long objPos[] = new long[256];
+    int objNum[] = new int[256];
+    int objGen[] = new int[256];
+    int objCount;
+    /** The positions of the "trailer" keywords. */
+    long trailers[] = new long[4];
+    int trailerCount;
+    /** The positions of the "/ObjStm" names. */
+    long objStms[] = new long[16];
+    int objStmCount;
+    /** The positions of the "/XRef" names. */
+    long xrefs[] = new long[4];
+    int xrefCount;
+
+    /**
+     * @param file a view of the file, owned by the scanner
+     * @param start the start of the section
+     * @param end the end of the section, exclusive
+     */
+    XrefScanner(RandomAccessFileOrArray file, long start, long end) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+    }
+
+    public Object call() throws IOException {
+        try {
+            file.reOpen();
+            scan();
+        }
+        finally {
+            file.close();
+        }
+        return this;
+    }
+
+    private void scan() throws IOException {
+        long length = file.length();
+        if (end > length)
+            end = length;
+        boolean lineStart = isLineStart(start);
+        byte b[] = new byte[BLOCK_SIZE + OVERLAP];
+        byte line[] = new byte[LINE_SIZE];
+        for (long blockStart = start; blockStart < end; blockStart += BLOCK_SIZE) {
+            int blockEnd = (int)Math.min(BLOCK_SIZE, end - blockStart);
+            int avail = (int)Math.min(b.length, length - blockStart);
+            file.seek(blockStart);
+            file.readFully(b, 0, avail);
+            for (int p = 0; p < blockEnd; ++p) {
+                int c = b[p] & 0xff;
+                if (PRTokeniser.isWhitespace(c)) {
+                    if (c == '\n' || c == '\r')
+                        lineStart = true;
+                    continue;
+                }
+                if (c == '/') {
+                    if (matches(b, p, avail, OBJSTM))
+                        objStms = add(objStms, objStmCount++, blockStart + p);
+                    else if (matches(b, p, avail, XREF))
+                        xrefs = add(xrefs, xrefCount++, blockStart + p);
+                }
+                if (!lineStart)
+                    continue;
+                lineStart = false;
+                if (c == 't') {
+                    if (matches(b, p, avail, TRAILER))
+                        trailers = add(trailers, trailerCount++, blockStart + p);
+                }
+                else if (c >= '0' && c <= '9') {
+                    int len = 0;
+                    while (len < LINE_SIZE && p + len < avail) {
+                        int ch = b[p + len];
+                        if (ch == '\n' || ch == '\r')
+                            break;
+                        ++len;
+                    }
+                    if (!contains(b, p, len, OBJ))
+                        continue;
+                    // the same line rebuildXref() used to give to checkObjectStart()
+                    System.arraycopy(b, p, line, 0, len);
+                    if (len + 2 <= LINE_SIZE) {
+                        line[len++] = (byte)' ';
+                        line[len++] = (byte)'X';
+                    }
+                    byte l[] = line;
+                    if (len < LINE_SIZE) {
+                        l = new byte[len];
+                        System.arraycopy(line, 0, l, 0, len);
+                    }
+                    int obj[] = PRTokeniser.checkObjectStart(l);
+                    if (obj != null)
+                        addObject(blockStart + p, obj[0], obj[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if a token at this position would be at the start of a line,
+     * that is, if the whitespace before it has an end of line.
+     */
+    private boolean isLineStart(long pos) throws IOException {
+        while (--pos >= 0) {
+            file.seek(pos);
+            int c = file.read();
+            if (c == '\n' || c == '\r')
+                return true;
+            if (!PRTokeniser.isWhitespace(c))
+                return false;
+        }
+        return true;
+    }
+
+    private void addObject(long pos, int num, int gen) {
+        if (objCount == objPos.length) {
+            int n = objCount * 2;
+            long p2[] = new long[n];
+            System.arraycopy(objPos, 0, p2, 0, objCount);
+            objPos = p2;
+            int n2[] = new int[n];
+            System.arraycopy(objNum, 0, n2, 0, objCount);
+            objNum = n2;
+            int g2[] = new int[n];
+            System.arraycopy(objGen, 0, g2, 0, objCount);
+            objGen = g2;
+        }
+        objPos[objCount] = pos;
+        objNum[objCount] = num;
+        objGen[objCount] = gen;
+        ++objCount;
+    }
+
+    private static long[] add(long a[], int count, long value) {
+        if (count == a.length) {
+            long a2[] = new long[count * 2];
+            System.arraycopy(a, 0, a2, 0, count);
+            a = a2;
+        }
+        a[count] = value;
+        return a;
+    }
+
+    private static boolean matches(byte b[], int p, int avail, byte s[]) {
+        if (p + s.length > avail)
+            return false;
+        for (int k = 0; k < s.length; ++k) {
+            if (b[p + k] != s[k])
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean contains(byte b[], int p, int len, byte s[]) {
+        for (int k = 0; k + s.length <= len; ++k) {
+            if (matches(b, p + k, p + len, s))
+                return true;
+        }
+        return false;
+    }
+}
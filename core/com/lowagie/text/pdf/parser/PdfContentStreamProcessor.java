@@ -73,6 +73,11 @@ public abstract class PdfContentStreamProcessor {
 
 	/** A map with all supported operators operators (PDF syntax). */
     private Map operators;
+    /**
+     * The operators with one or two characters, indexed by their first
+     * character and then by the second one or 0.
+     */
+    private OperatorEntry operatorTable[][] = new OperatorEntry[128][];
     /** Resources for the content stream. */
     private PdfDictionary resources;
     /** Stack keeping track of the graphics state. */
@@ -81,6 +86,11 @@ public abstract class PdfContentStreamProcessor {
     private Matrix textMatrix;
     /** Text line matrix. */
     private Matrix textLineMatrix;
+    /**
+     * <CODE>true</CODE> if a subclass overrides <CODE>invokeOperator</CODE>;
+     * all the operators then go through it.
+     */
+    private boolean overridesInvokeOperator;
     
     /**
      * Creates a new PDF Content Stream Processor.
@@ -88,6 +98,12 @@ public abstract class PdfContentStreamProcessor {
     public PdfContentStreamProcessor() {
         populateOperators();
         reset();
+        try {
+            overridesInvokeOperator = getClass().getMethod("invokeOperator", new Class[]{PdfLiteral.class, ArrayList.class}).getDeclaringClass() != PdfContentStreamProcessor.class;
+        }
+        catch (NoSuchMethodException e) {
+            overridesInvokeOperator = false;
+        }
     }
 
     /**
@@ -96,31 +112,71 @@ public abstract class PdfContentStreamProcessor {
     private void populateOperators(){
         operators = new HashMap();
         
-        operators.put("q", new PushGraphicsState());
-        operators.put("Q", new PopGraphicsState());
-        operators.put("cm", new ModifyCurrentTransformationMatrix());
-        operators.put("gs", new ProcessGraphicsStateResource());
+        registerOperator("q", new PushGraphicsState());
+        registerOperator("Q", new PopGraphicsState());
+        registerOperator("cm", new ModifyCurrentTransformationMatrix());
+        registerOperator("gs", new ProcessGraphicsStateResource());
         
-        operators.put("Tc", new SetTextCharacterSpacing());
-        operators.put("Tw", new SetTextWordSpacing());
-        operators.put("Tz", new SetTextHorizontalScaling());
-        operators.put("TL", new SetTextLeading());
-        operators.put("Tf", new SetTextFont());
-        operators.put("Tr", new SetTextRenderMode());
-        operators.put("Ts", new SetTextRise());
+        registerOperator("Tc", new SetTextCharacterSpacing());
+        registerOperator("Tw", new SetTextWordSpacing());
+        registerOperator("Tz", new SetTextHorizontalScaling());
+        registerOperator("TL", new SetTextLeading());
+        registerOperator("Tf", new SetTextFont());
+        registerOperator("Tr", new SetTextRenderMode());
+        registerOperator("Ts", new SetTextRise());
         
-        operators.put("BT", new BeginText());
-        operators.put("ET", new EndText());
+        registerOperator("BT", new BeginText());
+        registerOperator("ET", new EndText());
 
-        operators.put("Td", new TextMoveStartNextLine());
-        operators.put("TD", new TextMoveStartNextLineWithLeading());
-        operators.put("Tm", new TextSetTextMatrix());
-        operators.put("T*", new TextMoveNextLine());
+        registerOperator("Td", new TextMoveStartNextLine());
+        registerOperator("TD", new TextMoveStartNextLineWithLeading());
+        registerOperator("Tm", new TextSetTextMatrix());
+        registerOperator("T*", new TextMoveNextLine());
         
-        operators.put("Tj", new ShowText());
-        operators.put("'", new MoveNextLineAndShowText());
-        operators.put("\"", new MoveNextLineAndShowTextWithSpacing());
-        operators.put("TJ", new ShowTextArray());
+        registerOperator("Tj", new ShowText());
+        registerOperator("'", new MoveNextLineAndShowText());
+        registerOperator("\"", new MoveNextLineAndShowTextWithSpacing());
+        registerOperator("TJ", new ShowTextArray());
+    }
+    
+    /**
+     * Adds an operator to the map and, if it's short, to the table.
+     * @param operator the operator (PDF syntax)
+     * @param op the implementation of the operator
+     */
+    private void registerOperator(String operator, ContentOperator op){
+        OperatorEntry entry = new OperatorEntry(op, new PdfLiteral(PdfContentParser.COMMAND_TYPE, operator));
+        operators.put(operator, entry);
+        int len = operator.length();
+        int c0 = operator.charAt(0);
+        int c1 = len > 1 ? operator.charAt(1) : 0;
+        if (len > 2 || c0 >= 128 || c1 >= 128)
+            return;
+        if (operatorTable[c0] == null)
+            operatorTable[c0] = new OperatorEntry[128];
+        operatorTable[c0][c1] = entry;
+    }
+    
+    /**
+     * Finds an operator from its bytes.
+     * @param b the bytes of the operator
+     * @param len the length of the operator
+     * @return the operator or <CODE>null</CODE> if it's not supported
+     */
+    private OperatorEntry getOperator(byte b[], int len){
+        if (len == 0)
+            return null;
+        if (len > 2){
+            char chars[] = new char[len];
+            for (int k = 0; k < len; ++k)
+                chars[k] = (char)(b[k] & 0xff);
+            return (OperatorEntry)operators.get(new String(chars));
+        }
+        int c0 = b[0];
+        int c1 = len > 1 ? b[1] : 0;
+        if (c0 < 0 || c1 < 0 || operatorTable[c0] == null)
+            return null;
+        return operatorTable[c0][c1];
     }
     
     /**
@@ -166,13 +222,23 @@ public abstract class PdfContentStreamProcessor {
      * @param operands	a list with operands
      */
     public void invokeOperator(PdfLiteral operator, ArrayList operands){
-        ContentOperator op = (ContentOperator)operators.get(operator.toString());
-        if (op == null){
+        byte b[] = operator.getBytes();
+        OperatorEntry entry = getOperator(b, b.length);
+        if (entry == null){
             //System.out.println("Skipping operator " + operator);
             return;
         }
         
-        op.invoke(this, operator, operands);
+        entry.operator.invoke(this, operator, operands);
+    }
+
+    /**
+     * Gets a font, shared with the other processors working on the same document.
+     * @param refFont the indirect reference to the font dictionary
+     * @return the font
+     */
+    private static CMapAwareDocumentFont getFont(PRIndirectReference refFont){
+        return refFont.getReader().getCMapAwareFont(refFont);
     }
 
     /**
@@ -197,17 +263,16 @@ public abstract class PdfContentStreamProcessor {
     /**
      * Gets the width of a String.
      * @param string	the string that needs measuring
-     * @param tj	text adjustment
      * @return	the width of a String
      */
-    public float getStringWidth(String string, float tj){
+    public float getStringWidth(String string){
         DocumentFont font = gs().font;
         char[] chars = string.toCharArray();
         float totalWidth = 0;
         for (int i = 0; i < chars.length; i++) {
             float w = font.getWidth(chars[i]) / 1000.0f;
             float wordSpacing = chars[i] == 32 ? gs().wordSpacing : 0f;
-            totalWidth += ((w - tj/1000f) * gs().fontSize + gs().characterSpacing + wordSpacing) * gs().horizontalScaling;
+            totalWidth += (w * gs().fontSize + gs().characterSpacing + wordSpacing) * gs().horizontalScaling;
         }
         
         return totalWidth;
@@ -216,12 +281,11 @@ public abstract class PdfContentStreamProcessor {
     /**
      * Displays text.
      * @param string	the text to display
-     * @param tj		the text adjustment
      */
-    public void displayPdfString(PdfString string, float tj){
+    public void displayPdfString(PdfString string){
         String unicode = decode(string);
         
-        float width = getStringWidth(unicode, tj); // this is width in unscaled units - we have to normalize by the Tm scaling
+        float width = getStringWidth(unicode); // this is width in unscaled units - we have to normalize by the Tm scaling
 
         Matrix nextTextMatrix = new Matrix(width, 0).multiply(textMatrix);
 
@@ -240,11 +304,52 @@ public abstract class PdfContentStreamProcessor {
         reset();
         this.resources = resources;
         try {
-            PdfContentParser ps = new PdfContentParser(new PRTokeniser(contentBytes));
+            PRTokeniser tokeniser = new PRTokeniser(contentBytes);
+            PdfContentParser ps = new PdfContentParser(tokeniser);
             ArrayList operands = new ArrayList();
-            while (ps.parse(operands).size() > 0){
-                PdfLiteral operator = (PdfLiteral)operands.get(operands.size()-1);
-                invokeOperator(operator, operands);
+            // the numbers are kept as primitives and only become objects
+            // if the operator is supported; their place in operands is null
+            double numbers[] = new double[16];
+            while (ps.nextValidToken()){
+                int type = tokeniser.getTokenType();
+                if (type == PRTokeniser.TK_NUMBER){
+                    int idx = operands.size();
+                    if (idx == numbers.length){
+                        double n2[] = new double[idx * 2];
+                        System.arraycopy(numbers, 0, n2, 0, idx);
+                        numbers = n2;
+                    }
+                    try {
+                        numbers[idx] = tokeniser.doubleValue();
+                    }
+                    catch (NumberFormatException e) {
+                        throw new RuntimeException(tokeniser.getStringValue() + " is not a valid number - " + e.toString());
+                    }
+                    operands.add(null);
+                }
+                else if (type == PRTokeniser.TK_OTHER){
+                    OperatorEntry entry = getOperator(tokeniser.getTokenBytes(), tokeniser.getTokenLength());
+                    if (entry != null || overridesInvokeOperator){
+                        int size = operands.size();
+                        for (int k = 0; k < size; ++k){
+                            if (operands.get(k) == null)
+                                operands.set(k, new PdfNumber(numbers[k]));
+                        }
+                        if (overridesInvokeOperator){
+                            PdfLiteral operator = entry != null ? entry.literal : new PdfLiteral(PdfContentParser.COMMAND_TYPE, tokeniser.getStringValue());
+                            operands.add(operator);
+                            invokeOperator(operator, operands);
+                        }
+                        else {
+                            operands.add(entry.literal);
+                            entry.operator.invoke(this, entry.literal, operands);
+                        }
+                    }
+                    operands.clear();
+                }
+                else {
+                    operands.add(ps.readCurrentObject());
+                }
             }
             
         }
@@ -261,14 +366,15 @@ public abstract class PdfContentStreamProcessor {
     private static class ShowTextArray implements ContentOperator{
         public void invoke(PdfContentStreamProcessor processor, PdfLiteral operator, ArrayList operands) {
             PdfArray array = (PdfArray)operands.get(0);
-            float tj = 0;
             for (Iterator i = array.listIterator(); i.hasNext(); ) {
             	Object entryObj = i.next();
                 if (entryObj instanceof PdfString){
-                    processor.displayPdfString((PdfString)entryObj, tj);
-                    tj = 0;
+                    processor.displayPdfString((PdfString)entryObj);
                 } else {
-                    tj = ((PdfNumber)entryObj).floatValue();
+                    // a number moves the text position by -tj/1000 text space units, scaled like a glyph width
+                    float tj = ((PdfNumber)entryObj).floatValue();
+                    float adjustment = -tj / 1000f * processor.gs().fontSize * processor.gs().horizontalScaling;
+                    processor.textMatrix = new Matrix(adjustment, 0).multiply(processor.textMatrix);
                 }
             }
 
@@ -315,7 +421,7 @@ public abstract class PdfContentStreamProcessor {
         public void invoke(PdfContentStreamProcessor processor, PdfLiteral operator, ArrayList operands) {
             PdfString string = (PdfString)operands.get(0);
             
-            processor.displayPdfString(string, 0);
+            processor.displayPdfString(string);
         }
     }
     
@@ -386,7 +492,7 @@ public abstract class PdfContentStreamProcessor {
             float size = ((PdfNumber)operands.get(1)).floatValue();
             
             PdfDictionary fontsDictionary = processor.resources.getAsDict(PdfName.FONT);
-            CMapAwareDocumentFont font = new CMapAwareDocumentFont((PRIndirectReference)fontsDictionary.get(fontResourceName));
+            CMapAwareDocumentFont font = getFont((PRIndirectReference)fontsDictionary.get(fontResourceName));
             
             processor.gs().font = font;
             processor.gs().fontSize = size;
@@ -430,7 +536,7 @@ public abstract class PdfContentStreamProcessor {
     private static class SetTextHorizontalScaling implements ContentOperator{
         public void invoke(PdfContentStreamProcessor processor, PdfLiteral operator, ArrayList operands) {
             PdfNumber scale = (PdfNumber)operands.get(0);
-            processor.gs().horizontalScaling = scale.floatValue();
+            processor.gs().horizontalScaling = scale.floatValue() / 100f;
         }
     }
 
@@ -470,7 +576,7 @@ public abstract class PdfContentStreamProcessor {
             // at this point, all we care about is the FONT entry in the GS dictionary
             PdfArray fontParameter = gsDic.getAsArray(PdfName.FONT);
             if (fontParameter != null){
-                CMapAwareDocumentFont font = new CMapAwareDocumentFont((PRIndirectReference)fontParameter.getPdfObject(0));
+                CMapAwareDocumentFont font = getFont((PRIndirectReference)fontParameter.getPdfObject(0));
                 float size = fontParameter.getAsNumber(1).floatValue();
                 
                 processor.gs().font = font;
@@ -536,4 +642,15 @@ public abstract class PdfContentStreamProcessor {
         }
     }
     
+    /** A supported operator with the literal passed to it. */
+    private static class OperatorEntry{
+        final ContentOperator operator;
+        final PdfLiteral literal;
+        
+        OperatorEntry(ContentOperator operator, PdfLiteral literal){
+            this.operator = operator;
+            this.literal = literal;
+        }
+    }
+    
 }
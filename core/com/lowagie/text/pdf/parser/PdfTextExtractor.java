@@ -47,7 +47,18 @@
 package com.lowagie.text.pdf.parser;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import com.lowagie.text.ExceptionConverter;
 import com.lowagie.text.pdf.PdfDictionary;
 import com.lowagie.text.pdf.PdfName;
 import com.lowagie.text.pdf.PdfReader;
@@ -93,9 +104,164 @@ public class PdfTextExtractor {
      * @throws IOException
      */
     public String getTextFromPage(int page) throws IOException {
+        return getTextFromPage(page, extractionProcessor);
+    }
+
+    private String getTextFromPage(int page, SimpleTextExtractingPdfContentStreamProcessor processor) throws IOException {
+        PdfDictionary pageDic = reader.getPageN(page);
+        PdfDictionary resourcesDic = pageDic.getAsDict(PdfName.RESOURCES);
+        processor.processContent(getContentBytesForPage(page), resourcesDic);
+        return processor.getResultantText();
+    }
+
+    private String getTextFromPage(int page, SimpleTextExtractingPdfContentStreamProcessor processor, RandomAccessFileOrArray file) throws IOException {
+        PdfDictionary pageDic = reader.getPageN(page);
+        PdfDictionary resourcesDic = pageDic.getAsDict(PdfName.RESOURCES);
+        processor.processContent(reader.getPageContent(page, file), resourcesDic);
+        return processor.getResultantText();
+    }
+
+    /**
+     * Passes the text of a page to a listener, one event for each string
+     * drawn, with its font and position. Nothing is kept after each event,
+     * so a document of any size can be processed in constant memory.
+     * @param page the page number of the page
+     * @param listener the listener receiving the text
+     * @throws IOException
+     * @since 2.1.8
+     */
+    public void processPage(int page, TextRenderListener listener) throws IOException {
+        TextRenderingPdfContentStreamProcessor processor = new TextRenderingPdfContentStreamProcessor(listener);
+        processor.setPage(page);
         PdfDictionary pageDic = reader.getPageN(page);
         PdfDictionary resourcesDic = pageDic.getAsDict(PdfName.RESOURCES);
-        extractionProcessor.processContent(getContentBytesForPage(page), resourcesDic);        
-        return extractionProcessor.getResultantText();
+        processor.processContent(getContentBytesForPage(page), resourcesDic);
+    }
+
+    /**
+     * Gets the text from a range of pages, using several threads.
+     * Use 1 and <CODE>reader.getNumberOfPages()</CODE> to get the text of
+     * the whole document.
+     * @param firstPage the first page
+     * @param lastPage the last page, included
+     * @param threads the number of threads extracting the text
+     * @return the text of the pages, in page order
+     * @throws IOException
+     * @since 2.1.8
+     */
+    public String[] getTextFromPages(final int firstPage, int lastPage, int threads) throws IOException {
+        final String text[] = new String[Math.max(0, lastPage - firstPage + 1)];
+        getTextFromPages(firstPage, lastPage, threads, new PageTextListener() {
+            public void pageText(int page, String pageText) {
+                text[page - firstPage] = pageText;
+            }
+        });
+        return text;
+    }
+
+    /**
+     * Gets the text from a range of pages, using several threads. The pages
+     * are extracted at the same time but the listener gets them in page order,
+     * from the calling thread. Each thread has its own processor and reads the
+     * content from its own view of the file, the reader is shared.
+     * @param firstPage the first page
+     * @param lastPage the last page, included
+     * @param threads the number of threads extracting the text
+     * @param listener receives the text of each page
+     * @throws IOException
+     * @since 2.1.8
+     */
+    public void getTextFromPages(int firstPage, int lastPage, int threads, PageTextListener listener) throws IOException {
+        if (threads <= 1) {
+            SimpleTextExtractingPdfContentStreamProcessor processor = new SimpleTextExtractingPdfContentStreamProcessor();
+            RandomAccessFileOrArray file = reader.getSafeFile();
+            try {
+                file.reOpen();
+                for (int page = firstPage; page <= lastPage; ++page)
+                    listener.pageText(page, getTextFromPage(page, processor, file));
+            }
+            finally {
+                try{file.close();}catch(Exception e){}
+            }
+            return;
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "iText text extraction");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // each thread has its processor and its view of the file, opened once
+        final ArrayList workers = new ArrayList();
+        final ThreadLocal worker = new ThreadLocal() {
+            protected Object initialValue() {
+                Worker w = new Worker(reader.getSafeFile());
+                synchronized (workers) {
+                    workers.add(w);
+                }
+                return w;
+            }
+        };
+        try {
+            // the pages waiting for the listener are limited to keep the memory bounded
+            int maxPending = threads * 4;
+            LinkedList pending = new LinkedList();
+            int nextPage = firstPage;
+            int page = firstPage;
+            while (page <= lastPage) {
+                while (nextPage <= lastPage && pending.size() < maxPending) {
+                    final int p = nextPage++;
+                    pending.add(pool.submit(new Callable() {
+                        public Object call() throws Exception {
+                            Worker w = (Worker)worker.get();
+                            w.file.reOpen();
+                            return getTextFromPage(p, w.processor, w.file);
+                        }
+                    }));
+                }
+                Future result = (Future)pending.removeFirst();
+                try {
+                    listener.pageText(page++, (String)result.get());
+                }
+                catch (InterruptedException e) {
+                    throw new InterruptedIOException(e.getMessage());
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException)cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    throw new ExceptionConverter(new Exception(cause));
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+            // the files can only be closed when no thread is reading them
+            boolean terminated = false;
+            try {
+                terminated = pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (terminated) {
+                for (int k = 0; k < workers.size(); ++k) {
+                    try{((Worker)workers.get(k)).file.close();}catch(Exception e){}
+                }
+            }
+        }
+    }
+
+    /** The processor and the view of the file of a thread. */
+    private static class Worker {
+        final SimpleTextExtractingPdfContentStreamProcessor processor = new SimpleTextExtractingPdfContentStreamProcessor();
+        final RandomAccessFileOrArray file;
+
+        Worker(RandomAccessFileOrArray file) {
+            this.file = file;
+        }
     }
 }
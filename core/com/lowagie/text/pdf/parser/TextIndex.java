@@ -0,0 +1,366 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
+
+/**
+ * A full-text index of the words of a document, written by
+ * <CODE>TextIndexBuilder</CODE>. Only the list of words is loaded in memory;
+ * the pages and positions of each word are read from the file when it's
+ * searched.
+ * <P>
+ * The words are the runs of letters and digits of the text, in lower case.
+ * The queries can be used from several threads at the same time.
+ * @since 2.1.8
+ */
+public class TextIndex {
+
+    /** The first bytes of an index file. */
+    static final byte MAGIC[] = {'%', 'I', 'T', 'I'};
+    /** The version of the file format. */
+    static final int VERSION = 1;
+    /** The coordinates are stored in tenths of a point. */
+    static final float UNIT = 10f;
+
+    private RandomAccessFileOrArray file;
+    /** The hash of the content of each page, <CODE>null</CODE> for the pages not indexed. */
+    byte pageHashes[][];
+    /** The words, sorted. */
+    String terms[];
+    /** The number of occurrences of each word. */
+    int counts[];
+    /** The position of the occurrences of each word, from <CODE>postingsStart</CODE>. */
+    long offsets[];
+    private long postingsStart;
+
+    /**
+     * Opens an index file.
+     * @param filename the name of the file
+     * @throws IOException on error
+     */
+    public TextIndex(String filename) throws IOException {
+        this(new RandomAccessFileOrArray(filename));
+    }
+
+    /**
+     * Opens an index.
+     * @param file the index; it will be closed by <CODE>close()</CODE>
+     * @throws IOException on error
+     */
+    public TextIndex(RandomAccessFileOrArray file) throws IOException {
+        this.file = file;
+        file.seek(0);
+        for (int k = 0; k < MAGIC.length; ++k) {
+            if (file.readByte() != MAGIC[k])
+                throw new IOException("Not a text index.");
+        }
+        int version = file.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported text index version: " + version);
+        int pageCount = file.readInt();
+        pageHashes = new byte[pageCount][];
+        for (int k = 0; k < pageCount; ++k) {
+            int len = file.readUnsignedByte();
+            if (len > 0) {
+                pageHashes[k] = new byte[len];
+                file.readFully(pageHashes[k]);
+            }
+        }
+        int termCount = file.readInt();
+        terms = new String[termCount];
+        counts = new int[termCount];
+        offsets = new long[termCount];
+        for (int k = 0; k < termCount; ++k) {
+            terms[k] = file.readUTF();
+            counts[k] = file.readInt();
+            offsets[k] = file.readLong();
+        }
+        postingsStart = file.getFilePointer();
+    }
+
+    /**
+     * Gets the number of pages of the indexed document.
+     * @return the number of pages
+     */
+    public int getPageCount() {
+        return pageHashes.length;
+    }
+
+    /**
+     * Gets the number of different words in the index.
+     * @return the number of words
+     */
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    /**
+     * Finds all the occurrences of a word.
+     * @param word the word; the case is ignored
+     * @return the occurrences, by page and position in the page
+     * @throws IOException on error
+     */
+    public Hit[] search(String word) throws IOException {
+        StringBuffer buf = new StringBuffer(word.length());
+        for (int k = 0; k < word.length(); ++k)
+            buf.append(Character.toLowerCase(word.charAt(k)));
+        int idx = Arrays.binarySearch(terms, buf.toString());
+        if (idx < 0)
+            return new Hit[0];
+        return readHits(idx);
+    }
+
+    /**
+     * Finds the pages that contain all the words of a query.
+     * @param query the words separated by spaces or punctuation; the case is ignored
+     * @return the page numbers, in ascending order
+     * @throws IOException on error
+     */
+    public int[] getPages(String query) throws IOException {
+        String words[] = splitWords(query);
+        if (words.length == 0)
+            return new int[0];
+        // start with the rarest word
+        int idx[] = new int[words.length];
+        for (int k = 0; k < words.length; ++k) {
+            idx[k] = Arrays.binarySearch(terms, words[k]);
+            if (idx[k] < 0)
+                return new int[0];
+        }
+        int rarest = 0;
+        for (int k = 1; k < idx.length; ++k) {
+            if (counts[idx[k]] < counts[idx[rarest]])
+                rarest = k;
+        }
+        int pages[] = getPages(readHits(idx[rarest]));
+        for (int k = 0; k < idx.length && pages.length > 0; ++k) {
+            if (k != rarest)
+                pages = intersect(pages, getPages(readHits(idx[k])));
+        }
+        return pages;
+    }
+
+    /**
+     * Closes the index file.
+     * @throws IOException on error
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Reads the occurrences of a word.
+     * @param idx the index of the word in <CODE>terms</CODE>
+     * @return the occurrences
+     * @throws IOException on error
+     */
+    Hit[] readHits(int idx) throws IOException {
+        Hit hits[] = new Hit[counts[idx]];
+        synchronized (file) {
+            file.seek(postingsStart + offsets[idx]);
+            int page = 0;
+            for (int k = 0; k < hits.length; ++k) {
+                page += readVarInt(file);
+                int position = readVarInt(file);
+                int llx = readSignedVarInt(file);
+                int lly = readSignedVarInt(file);
+                int width = readVarInt(file);
+                int height = readVarInt(file);
+                hits[k] = new Hit(page, position, llx / UNIT, lly / UNIT, (llx + width) / UNIT, (lly + height) / UNIT);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Splits a text in words the same way the index does.
+     * @param text the text
+     * @return the words, in lower case
+     */
+    static String[] splitWords(String text) {
+        ArrayList words = new ArrayList();
+        StringBuffer word = new StringBuffer();
+        for (int k = 0; k <= text.length(); ++k) {
+            char c = k < text.length() ? text.charAt(k) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            }
+            else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return (String[])words.toArray(new String[words.size()]);
+    }
+
+    private static int[] getPages(Hit hits[]) {
+        int pages[] = new int[hits.length];
+        int n = 0;
+        for (int k = 0; k < hits.length; ++k) {
+            if (n == 0 || pages[n - 1] != hits[k].page)
+                pages[n++] = hits[k].page;
+        }
+        int result[] = new int[n];
+        System.arraycopy(pages, 0, result, 0, n);
+        return result;
+    }
+
+    private static int[] intersect(int a[], int b[]) {
+        int result[] = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j])
+                ++i;
+            else if (a[i] > b[j])
+                ++j;
+            else {
+                result[n++] = a[i];
+                ++i;
+                ++j;
+            }
+        }
+        int r[] = new int[n];
+        System.arraycopy(result, 0, r, 0, n);
+        return r;
+    }
+
+    private static int readVarInt(RandomAccessFileOrArray file) throws IOException {
+        int v = 0;
+        int shift = 0;
+        while (true) {
+            int b = file.read();
+            if (b < 0)
+                throw new IOException("Unexpected end of text index.");
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+            shift += 7;
+        }
+    }
+
+    private static int readSignedVarInt(RandomAccessFileOrArray file) throws IOException {
+        int v = readVarInt(file);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * An occurrence of a word: the page, the position of the word in the
+     * page and its approximate bounding box in user space.
+     */
+    public static class Hit {
+        private final int page;
+        private final int position;
+        private final float llx;
+        private final float lly;
+        private final float urx;
+        private final float ury;
+
+        Hit(int page, int position, float llx, float lly, float urx, float ury) {
+            this.page = page;
+            this.position = position;
+            this.llx = llx;
+            this.lly = lly;
+            this.urx = urx;
+            this.ury = ury;
+        }
+
+        /**
+         * Gets the page number.
+         * @return the page number
+         */
+        public int getPage() {
+            return page;
+        }
+
+        /**
+         * Gets the position of the word in the page, counting the words from 0.
+         * @return the position of the word
+         */
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * Gets the lower left x coordinate of the bounding box.
+         * @return the coordinate
+         */
+        public float getLlx() {
+            return llx;
+        }
+
+        /**
+         * Gets the lower left y coordinate of the bounding box.
+         * @return the coordinate
+         */
+        public float getLly() {
+            return lly;
+        }
+
+        /**
+         * Gets the upper right x coordinate of the bounding box.
+         * @return the coordinate
+         */
+        public float getUrx() {
+            return urx;
+        }
+
+        /**
+         * Gets the upper right y coordinate of the bounding box.
+         * @return the coordinate
+         */
+        public float getUry() {
+            return ury;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import com.lowagie.text.ExceptionConverter;
+import com.lowagie.text.pdf.CMapAwareDocumentFont;
+import com.lowagie.text.pdf.PRIndirectReference;
+import com.lowagie.text.pdf.PRStream;
+import com.lowagie.text.pdf.PdfArray;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfEncodings;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
+
+/**
+ * Builds a <CODE>TextIndex</CODE> of a document. The words are collected
+ * while the content of each page is processed, without extracting the text
+ * of the page first.
+ * <P>
+ * The index can be updated: a builder created from an existing index only
+ * processes again the pages whose content changed, for example after the
+ * document was modified with <CODE>PdfStamper</CODE> in append mode, and
+ * the pages that were added.
+ * @since 2.1.8
+ */
+public class TextIndexBuilder {
+
+    /** The words of each page, the first page at 0. */
+    private ArrayList pages = new ArrayList();
+
+    /**
+     * Creates a builder for a new index.
+     */
+    public TextIndexBuilder() {
+    }
+
+    /**
+     * Creates a builder that updates an existing index.
+     * @param index the index to update
+     * @throws IOException on error
+     */
+    public TextIndexBuilder(TextIndex index) throws IOException {
+        int pageCount = index.getPageCount();
+        for (int k = 0; k < pageCount; ++k) {
+            PageTerms page = new PageTerms();
+            page.hash = index.pageHashes[k];
+            pages.add(page);
+        }
+        // put back the words of each page in their position
+        for (int t = 0; t < index.terms.length; ++t) {
+            TextIndex.Hit hits[] = index.readHits(t);
+            for (int k = 0; k < hits.length; ++k) {
+                TextIndex.Hit hit = hits[k];
+                PageTerms page = (PageTerms)pages.get(hit.getPage() - 1);
+                page.set(hit.getPosition(), index.terms[t], hit.getLlx(), hit.getLly(), hit.getUrx(), hit.getUry());
+            }
+        }
+    }
+
+    /**
+     * Indexes the pages of a document that are new or whose content changed
+     * since the index was built. The pages that no longer exist are removed.
+     * @param reader the document
+     * @return the number of pages indexed
+     * @throws IOException on error
+     */
+    public int update(PdfReader reader) throws IOException {
+        int pageCount = reader.getNumberOfPages();
+        while (pages.size() > pageCount)
+            pages.remove(pages.size() - 1);
+        int indexed = 0;
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        }
+        catch (Exception e) {
+            throw new ExceptionConverter(e);
+        }
+        RandomAccessFileOrArray file = reader.getSafeFile();
+        try {
+            for (int k = 1; k <= pageCount; ++k) {
+                byte content[] = reader.getPageContent(k, file);
+                if (content == null)
+                    content = new byte[0];
+                md5.update(content);
+                PdfDictionary resources = reader.getPageN(k).getAsDict(PdfName.RESOURCES);
+                digest(md5, resources, file, new HashSet());
+                byte hash[] = md5.digest();
+                PageTerms old = k <= pages.size() ? (PageTerms)pages.get(k - 1) : null;
+                if (old != null && Arrays.equals(old.hash, hash))
+                    continue;
+                PageTerms page = new PageTerms();
+                page.hash = hash;
+                WordCollector collector = new WordCollector(page);
+                TextRenderingPdfContentStreamProcessor processor = new TextRenderingPdfContentStreamProcessor(collector);
+                processor.setPage(k);
+                processor.processContent(content, resources);
+                collector.flush();
+                if (old != null)
+                    pages.set(k - 1, page);
+                else
+                    pages.add(page);
+                ++indexed;
+            }
+        }
+        finally {
+            try{file.close();}catch(Exception e){}
+        }
+        return indexed;
+    }
+
+    /**
+     * Writes the index, to be read by <CODE>TextIndex</CODE>.
+     * @param os the stream to write to; it's not closed
+     * @throws IOException on error
+     */
+    public void write(OutputStream os) throws IOException {
+        // invert the pages: each word with its occurrences as page, position pairs
+        HashMap postings = new HashMap();
+        for (int p = 0; p < pages.size(); ++p) {
+            PageTerms page = (PageTerms)pages.get(p);
+            for (int k = 0; k < page.count; ++k) {
+                String term = page.terms[k];
+                if (term == null)
+                    continue;
+                Postings list = (Postings)postings.get(term);
+                if (list == null) {
+                    list = new Postings();
+                    postings.put(term, list);
+                }
+                list.add(p, k);
+            }
+        }
+        String terms[] = (String[])postings.keySet().toArray(new String[postings.size()]);
+        Arrays.sort(terms);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        long offsets[] = new long[terms.length];
+        for (int t = 0; t < terms.length; ++t) {
+            offsets[t] = data.size();
+            Postings list = (Postings)postings.get(terms[t]);
+            int lastPage = 0;
+            for (int k = 0; k < list.size; k += 2) {
+                int p = list.data[k];
+                int position = list.data[k + 1];
+                PageTerms page = (PageTerms)pages.get(p);
+                writeVarInt(data, p + 1 - lastPage);
+                lastPage = p + 1;
+                writeVarInt(data, position);
+                int llx = Math.round(page.boxes[position * 4] * TextIndex.UNIT);
+                int lly = Math.round(page.boxes[position * 4 + 1] * TextIndex.UNIT);
+                int urx = Math.round(page.boxes[position * 4 + 2] * TextIndex.UNIT);
+                int ury = Math.round(page.boxes[position * 4 + 3] * TextIndex.UNIT);
+                writeSignedVarInt(data, llx);
+                writeSignedVarInt(data, lly);
+                writeVarInt(data, Math.max(0, urx - llx));
+                writeVarInt(data, Math.max(0, ury - lly));
+            }
+        }
+        DataOutputStream out = new DataOutputStream(os);
+        out.write(TextIndex.MAGIC);
+        out.writeInt(TextIndex.VERSION);
+        out.writeInt(pages.size());
+        for (int p = 0; p < pages.size(); ++p) {
+            byte hash[] = ((PageTerms)pages.get(p)).hash;
+            if (hash == null) {
+                out.writeByte(0);
+            }
+            else {
+                out.writeByte(hash.length);
+                out.write(hash);
+            }
+        }
+        out.writeInt(terms.length);
+        for (int t = 0; t < terms.length; ++t) {
+            out.writeUTF(terms[t]);
+            out.writeInt(((Postings)postings.get(terms[t])).size / 2);
+            out.writeLong(offsets[t]);
+        }
+        data.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Adds an object of the resources of a page to its hash. Indirect
+     * objects are followed once each, and the bytes of the images are left
+     * out as they don't change the text.
+     */
+    private static void digest(MessageDigest md5, PdfObject obj, RandomAccessFileOrArray file, HashSet visited) throws IOException {
+        if (obj == null) {
+            md5.update((byte)0);
+            return;
+        }
+        md5.update((byte)obj.type());
+        if (obj.isIndirect()) {
+            PRIndirectReference ref = (PRIndirectReference)obj;
+            md5.update(PdfEncodings.convertToBytes(ref.toString(), null));
+            if (visited.add(new Integer(ref.getNumber())))
+                digest(md5, PdfReader.getPdfObjectRelease(ref), file, visited);
+        }
+        else if (obj.isDictionary() || obj.isStream()) {
+            PdfDictionary dic = (PdfDictionary)obj;
+            Object keys[] = dic.getKeys().toArray();
+            Arrays.sort(keys);
+            for (int k = 0; k < keys.length; ++k) {
+                md5.update(((PdfName)keys[k]).getBytes());
+                digest(md5, dic.get((PdfName)keys[k]), file, visited);
+            }
+            if (obj.isStream() && !PdfName.IMAGE.equals(dic.get(PdfName.SUBTYPE)))
+                md5.update(PdfReader.getStreamBytesRaw((PRStream)obj, file));
+        }
+        else if (obj.isArray()) {
+            for (Iterator i = ((PdfArray)obj).listIterator(); i.hasNext(); )
+                digest(md5, (PdfObject)i.next(), file, visited);
+        }
+        else if (obj.getBytes() != null) {
+            md5.update(obj.getBytes());
+        }
+    }
+
+    private static void writeVarInt(OutputStream os, int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            os.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        os.write(v);
+    }
+
+    private static void writeSignedVarInt(OutputStream os, int v) throws IOException {
+        writeVarInt(os, (v << 1) ^ (v >> 31));
+    }
+
+    /** The words of a page, in order, with their bounding boxes. */
+    private static class PageTerms {
+        byte hash[];
+        String terms[] = new String[64];
+        float boxes[] = new float[256];
+        int count;
+
+        void set(int position, String term, float llx, float lly, float urx, float ury) {
+            if (position >= terms.length) {
+                int size = Math.max(terms.length * 2, position + 1);
+                String t[] = new String[size];
+                System.arraycopy(terms, 0, t, 0, count);
+                terms = t;
+                float b[] = new float[size * 4];
+                System.arraycopy(boxes, 0, b, 0, count * 4);
+                boxes = b;
+            }
+            terms[position] = term;
+            boxes[position * 4] = llx;
+            boxes[position * 4 + 1] = lly;
+            boxes[position * 4 + 2] = urx;
+            boxes[position * 4 + 3] = ury;
+            if (position >= count)
+                count = position + 1;
+        }
+
+        void add(String term, float llx, float lly, float urx, float ury) {
+            set(count, term, llx, lly, urx, ury);
+        }
+    }
+
+    /** A growable list of page, position pairs. */
+    private static class Postings {
+        int data[] = new int[8];
+        int size;
+
+        void add(int page, int position) {
+            if (size + 2 > data.length) {
+                int d[] = new int[data.length * 2];
+                System.arraycopy(data, 0, d, 0, size);
+                data = d;
+            }
+            data[size++] = page;
+            data[size++] = position;
+        }
+    }
+
+    /**
+     * Splits the text drawn in a page in words. A word can be drawn with
+     * several strings if they are on the same baseline and touch each other.
+     */
+    private static class WordCollector implements TextRenderListener {
+        private final PageTerms page;
+        private final StringBuffer word = new StringBuffer();
+        private float llx;
+        private float lly;
+        private float urx;
+        private float ury;
+        private float lastEndX;
+        private float lastEndY;
+        private float lastHeight;
+
+        WordCollector(PageTerms page) {
+            this.page = page;
+        }
+
+        public void renderText(TextRenderInfo renderInfo) {
+            String text = renderInfo.getText();
+            float startX = renderInfo.getStartX();
+            float startY = renderInfo.getStartY();
+            float height = renderInfo.getHeight();
+            // a small gap ends the word
+            float tolerance = Math.max(height, lastHeight) * 0.15f;
+            if (Math.abs(startX - lastEndX) > tolerance || Math.abs(startY - lastEndY) > tolerance)
+                flush();
+            int len = text.length();
+            CMapAwareDocumentFont font = renderInfo.getFont();
+            float total = 0;
+            for (int k = 0; k < len; ++k)
+                total += getWidth(font, text.charAt(k));
+            float dx = renderInfo.getEndX() - startX;
+            float dy = renderInfo.getEndY() - startY;
+            float pos = 0;
+            for (int k = 0; k < len; ++k) {
+                char c = text.charAt(k);
+                float x0 = startX + dx * pos / total;
+                float y0 = startY + dy * pos / total;
+                pos += getWidth(font, c);
+                if (Character.isLetterOrDigit(c)) {
+                    float x1 = startX + dx * pos / total;
+                    float y1 = startY + dy * pos / total;
+                    if (word.length() == 0) {
+                        llx = Math.min(x0, x1);
+                        lly = Math.min(y0, y1);
+                        urx = Math.max(x0, x1);
+                        ury = Math.max(y0, y1) + height;
+                    }
+                    else {
+                        llx = Math.min(llx, Math.min(x0, x1));
+                        lly = Math.min(lly, Math.min(y0, y1));
+                        urx = Math.max(urx, Math.max(x0, x1));
+                        ury = Math.max(ury, Math.max(y0, y1) + height);
+                    }
+                    word.append(Character.toLowerCase(c));
+                }
+                else {
+                    flush();
+                }
+            }
+            lastEndX = renderInfo.getEndX();
+            lastEndY = renderInfo.getEndY();
+            lastHeight = height;
+        }
+
+        /** The width of a character, all of them the same if the font has no widths. */
+        private static float getWidth(CMapAwareDocumentFont font, char c) {
+            int w = font == null ? 0 : font.getWidth(c);
+            return w > 0 ? w : 500;
+        }
+
+        void flush() {
+            if (word.length() == 0)
+                return;
+            page.add(word.toString(), llx, lly, urx, ury);
+            word.setLength(0);
+        }
+    }
+}
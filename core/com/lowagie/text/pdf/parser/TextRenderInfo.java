@@ -0,0 +1,168 @@
+/*
+ * $Id$
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf.parser;
+
+import com.lowagie.text.pdf.CMapAwareDocumentFont;
+
+/**
+ * A string drawn by a text showing operator, as passed to a
+ * <CODE>TextRenderListener</CODE>. The positions are the start and the end
+ * of the baseline of the string in user space, after the text matrix and
+ * the current transformation matrix are applied.
+ * @since 2.1.8
+ */
+public class TextRenderInfo {
+
+    private final String text;
+    private final CMapAwareDocumentFont font;
+    private final float fontSize;
+    private final float startX;
+    private final float startY;
+    private final float endX;
+    private final float endY;
+    private final float height;
+    private final int page;
+
+    /**
+     * Creates the information about a drawn string.
+     * @param text the text, in Unicode
+     * @param gs the graphics state when the text is drawn
+     * @param textMatrix the text matrix at the start of the string
+     * @param endingTextMatrix the text matrix at the end of the string
+     * @param page the page number, or 0 if it's not known
+     */
+    TextRenderInfo(String text, GraphicsState gs, Matrix textMatrix, Matrix endingTextMatrix, int page) {
+        this.text = text;
+        this.font = gs.font;
+        this.fontSize = gs.fontSize;
+        this.page = page;
+        Matrix start = textMatrix.multiply(gs.ctm);
+        Matrix end = endingTextMatrix.multiply(gs.ctm);
+        // the baseline is raised by the text rise
+        float rise = gs.rise;
+        startX = rise * start.get(Matrix.I21) + start.get(Matrix.I31);
+        startY = rise * start.get(Matrix.I22) + start.get(Matrix.I32);
+        endX = rise * end.get(Matrix.I21) + end.get(Matrix.I31);
+        endY = rise * end.get(Matrix.I22) + end.get(Matrix.I32);
+        float upX = start.get(Matrix.I21);
+        float upY = start.get(Matrix.I22);
+        height = fontSize * (float)Math.sqrt(upX * upX + upY * upY);
+    }
+
+    /**
+     * Gets the text.
+     * @return the text, in Unicode
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the font used to draw the text.
+     * @return the font
+     */
+    public CMapAwareDocumentFont getFont() {
+        return font;
+    }
+
+    /**
+     * Gets the font size, in text space units.
+     * @return the font size
+     */
+    public float getFontSize() {
+        return fontSize;
+    }
+
+    /**
+     * Gets the x coordinate of the start of the baseline.
+     * @return the x coordinate, in user space
+     */
+    public float getStartX() {
+        return startX;
+    }
+
+    /**
+     * Gets the y coordinate of the start of the baseline.
+     * @return the y coordinate, in user space
+     */
+    public float getStartY() {
+        return startY;
+    }
+
+    /**
+     * Gets the x coordinate of the end of the baseline.
+     * @return the x coordinate, in user space
+     */
+    public float getEndX() {
+        return endX;
+    }
+
+    /**
+     * Gets the y coordinate of the end of the baseline.
+     * @return the y coordinate, in user space
+     */
+    public float getEndY() {
+        return endY;
+    }
+
+    /**
+     * Gets the font size measured in user space, the approximate height
+     * of the text above the baseline.
+     * @return the font size in user space
+     */
+    public float getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the page where the text is drawn.
+     * @return the page number, or 0 if it's not known
+     */
+    public int getPage() {
+        return page;
+    }
+}
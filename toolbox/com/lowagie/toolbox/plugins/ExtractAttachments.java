@@ -38,6 +38,7 @@ package com.lowagie.toolbox.plugins;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Iterator;
 
@@ -210,10 +211,22 @@ public class ExtractAttachments extends AbstractTool {
 		PRStream prs = (PRStream) PdfReader.getPdfObject(ef.get(PdfName.F));
 		if (prs == null)
 			return;
-		byte b[] = PdfReader.getStreamBytes(prs);
 		FileOutputStream fout = new FileOutputStream(fullPath);
-		fout.write(b);
-		fout.close();
+		try {
+			InputStream in = PdfReader.getStreamInputStream(prs);
+			try {
+				byte b[] = new byte[8192];
+				int n;
+				while ((n = in.read(b)) > 0)
+					fout.write(b, 0, n);
+			}
+			finally {
+				in.close();
+			}
+		}
+		finally {
+			fout.close();
+		}
 	}
 
 }